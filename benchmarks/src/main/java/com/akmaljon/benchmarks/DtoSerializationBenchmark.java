@@ -0,0 +1,62 @@
+package com.akmaljon.benchmarks;
+
+import com.akmaljon.resourceservice.dto.SongMetadataDto;
+import com.akmaljon.songservice.dto.SongDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.concurrent.TimeUnit;
+
+// Covers both ends of the song metadata hop: resource-service writes SongMetadataDto, song-service reads SongDto
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DtoSerializationBenchmark {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private SongMetadataDto songMetadata;
+    private SongDto song;
+    private byte[] songMetadataJson;
+    private byte[] songJson;
+
+    @Setup
+    public void setUp() {
+        songMetadata = new SongMetadataDto(42L, "Benchmark Song", "Benchmark Artist", "Benchmark Album", "03:45", "2024");
+        song = new SongDto(42L, "Benchmark Song", "Benchmark Artist", "Benchmark Album", "03:45", "2024");
+        songMetadataJson = objectMapper.writeValueAsBytes(songMetadata);
+        songJson = objectMapper.writeValueAsBytes(song);
+    }
+
+    @Benchmark
+    public byte[] serializeSongMetadata() {
+        return objectMapper.writeValueAsBytes(songMetadata);
+    }
+
+    @Benchmark
+    public SongMetadataDto deserializeSongMetadata() {
+        return objectMapper.readValue(songMetadataJson, SongMetadataDto.class);
+    }
+
+    @Benchmark
+    public byte[] serializeSong() {
+        return objectMapper.writeValueAsBytes(song);
+    }
+
+    @Benchmark
+    public SongDto deserializeSong() {
+        return objectMapper.readValue(songJson, SongDto.class);
+    }
+}
@@ -0,0 +1,59 @@
+package com.akmaljon.benchmarks;
+
+import com.akmaljon.resourceservice.dto.SongMetadataDto;
+import com.akmaljon.resourceservice.metadata.ByteRangeSource;
+import com.akmaljon.resourceservice.service.MetadataExtractionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+// Compares the full Tika parse against the header fast path, per file size and bitrate mode
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class MetadataExtractionBenchmark {
+
+    private static final Long RESOURCE_ID = 1L;
+
+    @Param({"1", "10", "50"})
+    private int sizeMb;
+
+    @Param({"CBR", "VBR"})
+    private Mp3Samples.Encoding encoding;
+
+    private final MetadataExtractionService extractionService = new MetadataExtractionService(new SimpleMeterRegistry());
+    private byte[] audioData;
+    private ByteRangeSource rangeSource;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        audioData = Mp3Samples.generate(sizeMb * 1024 * 1024, encoding);
+        rangeSource = (offset, length) -> new ByteArrayInputStream(audioData, (int) offset, (int) length);
+    }
+
+    @Benchmark
+    public SongMetadataDto fullParse() {
+        return extractionService.extractMetadata(RESOURCE_ID, audioData);
+    }
+
+    @Benchmark
+    public SongMetadataDto headerFastPath() {
+        return extractionService.extractMetadata(RESOURCE_ID, audioData.length, rangeSource);
+    }
+}
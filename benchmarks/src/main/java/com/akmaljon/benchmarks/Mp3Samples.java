@@ -0,0 +1,94 @@
+package com.akmaljon.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+// Builds synthetic MP3 files in memory so benchmark runs do not depend on audio fixtures checked into the repo.
+// The frames carry no audio, only valid MPEG 1 Layer III headers, which is all the parsers look at
+public final class Mp3Samples {
+
+    public enum Encoding { CBR, VBR }
+
+    private static final int SAMPLE_RATE = 44100;
+    private static final int SAMPLES_PER_FRAME = 1152;
+    private static final int CBR_BITRATE_INDEX = 9;
+    // 96, 128, 160 and 192 kbit/s, cycled so the stream really has a variable bitrate
+    private static final int[] VBR_BITRATE_INDICES = {7, 9, 10, 11};
+    private static final int[] BITRATES = {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320};
+    // MPEG 1 stereo side information is 32 bytes, the Xing header follows it
+    private static final int XING_OFFSET = 4 + 32;
+
+    private Mp3Samples() {
+    }
+
+    public static byte[] generate(int sizeBytes, Encoding encoding) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(sizeBytes + 8 * 1024);
+        writeId3v2Tag(out);
+
+        int frameCount = 0;
+        int estimatedFrames = sizeBytes / frameLength(CBR_BITRATE_INDEX);
+        if (encoding == Encoding.VBR) {
+            out.writeBytes(xingFrame(estimatedFrames));
+        }
+        while (out.size() < sizeBytes) {
+            int bitrateIndex = encoding == Encoding.CBR
+                    ? CBR_BITRATE_INDEX
+                    : VBR_BITRATE_INDICES[frameCount % VBR_BITRATE_INDICES.length];
+            out.writeBytes(frame(bitrateIndex));
+            frameCount++;
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeId3v2Tag(ByteArrayOutputStream out) {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        writeTextFrame(frames, "TIT2", "Benchmark Song");
+        writeTextFrame(frames, "TPE1", "Benchmark Artist");
+        writeTextFrame(frames, "TALB", "Benchmark Album");
+        writeTextFrame(frames, "TYER", "2024");
+
+        int size = frames.size();
+        out.writeBytes(new byte[]{'I', 'D', '3', 3, 0, 0});
+        // Tag size is a 28-bit synchsafe integer
+        out.write((size >> 21) & 0x7F);
+        out.write((size >> 14) & 0x7F);
+        out.write((size >> 7) & 0x7F);
+        out.write(size & 0x7F);
+        out.writeBytes(frames.toByteArray());
+    }
+
+    private static void writeTextFrame(ByteArrayOutputStream out, String id, String text) {
+        byte[] value = text.getBytes(StandardCharsets.ISO_8859_1);
+        int size = value.length + 1;
+        out.writeBytes(id.getBytes(StandardCharsets.ISO_8859_1));
+        out.write((size >> 24) & 0xFF);
+        out.write((size >> 16) & 0xFF);
+        out.write((size >> 8) & 0xFF);
+        out.write(size & 0xFF);
+        out.write(0);
+        out.write(0);
+        out.write(0); // ISO-8859-1 text encoding
+        out.writeBytes(value);
+    }
+
+    private static byte[] xingFrame(int frameCount) {
+        byte[] frame = frame(CBR_BITRATE_INDEX);
+        byte[] tag = {'X', 'i', 'n', 'g', 0, 0, 0, 1,
+                (byte) (frameCount >> 24), (byte) (frameCount >> 16), (byte) (frameCount >> 8), (byte) frameCount};
+        System.arraycopy(tag, 0, frame, XING_OFFSET, tag.length);
+        return frame;
+    }
+
+    private static byte[] frame(int bitrateIndex) {
+        byte[] frame = new byte[frameLength(bitrateIndex)];
+        frame[0] = (byte) 0xFF;
+        frame[1] = (byte) 0xFB; // MPEG 1, Layer III, no CRC
+        frame[2] = (byte) (bitrateIndex << 4); // 44.1 kHz, no padding
+        frame[3] = (byte) 0x44; // joint stereo
+        return frame;
+    }
+
+    private static int frameLength(int bitrateIndex) {
+        return SAMPLES_PER_FRAME / 8 * BITRATES[bitrateIndex] * 1000 / SAMPLE_RATE;
+    }
+}
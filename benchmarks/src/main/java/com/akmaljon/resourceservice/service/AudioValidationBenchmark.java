@@ -0,0 +1,46 @@
+package com.akmaljon.resourceservice.service;
+
+import com.akmaljon.benchmarks.Mp3Samples;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Lives in the service package to reach the package-private ResourceService.validateAudioData
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AudioValidationBenchmark {
+
+    private byte[] id3Header;
+    private byte[] frameSyncHeader;
+
+    @Setup
+    public void setUp() {
+        byte[] sample = Mp3Samples.generate(64 * 1024, Mp3Samples.Encoding.CBR);
+        id3Header = Arrays.copyOf(sample, 3);
+        frameSyncHeader = new byte[]{(byte) 0xFF, (byte) 0xFB, (byte) 0x90};
+    }
+
+    @Benchmark
+    public void id3Tag() {
+        ResourceService.validateAudioData(id3Header);
+    }
+
+    @Benchmark
+    public void frameSync() {
+        ResourceService.validateAudioData(frameSyncHeader);
+    }
+}
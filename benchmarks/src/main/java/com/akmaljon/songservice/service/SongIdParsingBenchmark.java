@@ -0,0 +1,51 @@
+package com.akmaljon.songservice.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Lives in the service package to reach the package-private ID parsing helpers of SongService
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SongIdParsingBenchmark {
+
+    // Number of IDs in the CSV, 28 six-digit IDs stay just under the 200 character limit
+    @Param({"1", "10", "28"})
+    private int idCount;
+
+    private String csvIds;
+
+    @Setup
+    public void setUp() {
+        csvIds = IntStream.rangeClosed(1, idCount)
+                .mapToObj(i -> String.valueOf(100_000 + i))
+                .collect(Collectors.joining(","));
+    }
+
+    @Benchmark
+    public List<Long> parseCsvIds() {
+        return SongService.parseCsvIds(csvIds);
+    }
+
+    @Benchmark
+    public Long validateAndParseId() {
+        return SongService.validateAndParseId("123456");
+    }
+}
@@ -1,5 +1,92 @@
+-- Distinct audio contents, addressed by SHA-256 and shared by all resources with identical bytes
+CREATE TABLE IF NOT EXISTS blobs (
+    checksum CHAR(64) PRIMARY KEY,
+    storage_key VARCHAR(255) NOT NULL,
+    size BIGINT NOT NULL,
+    ref_count INT NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    -- HOT blobs live in the primary store, COLD ones gzip-compressed in the cold store. DEMOTING ones are
+    -- still served from the primary store while they are copied to the cold store, PROMOTING ones from the
+    -- cold store while they are copied back
+    tier VARCHAR(10) NOT NULL DEFAULT 'HOT',
+    stored_size BIGINT,
+    access_count BIGINT NOT NULL DEFAULT 0,
+    last_accessed_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_blobs_unreferenced
+    ON blobs (updated_at)
+    WHERE ref_count = 0;
+
+CREATE INDEX IF NOT EXISTS idx_blobs_hot_last_accessed
+    ON blobs (last_accessed_at)
+    WHERE tier = 'HOT' AND ref_count > 0;
+
+-- Demotions claimed by an instance that stopped before finishing them
+CREATE INDEX IF NOT EXISTS idx_blobs_demoting
+    ON blobs (updated_at)
+    WHERE tier = 'DEMOTING';
+
+-- Promotions claimed by an instance that stopped before finishing them
+CREATE INDEX IF NOT EXISTS idx_blobs_promoting
+    ON blobs (updated_at)
+    WHERE tier = 'PROMOTING';
+
+CREATE TABLE IF NOT EXISTS blob_metadata (
+    checksum CHAR(64) PRIMARY KEY REFERENCES blobs (checksum) ON DELETE CASCADE,
+    name VARCHAR(100) NOT NULL,
+    artist VARCHAR(100) NOT NULL,
+    album VARCHAR(100) NOT NULL,
+    duration VARCHAR(5) NOT NULL,
+    year VARCHAR(4) NOT NULL
+);
+
 CREATE TABLE IF NOT EXISTS resources (
     id BIGSERIAL PRIMARY KEY,
-    data BYTEA NOT NULL
+    storage_key VARCHAR(255) NOT NULL,
+    size BIGINT NOT NULL,
+    checksum CHAR(64) NOT NULL REFERENCES blobs (checksum),
+    content_type VARCHAR(100) NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now()
 );
 
+CREATE INDEX IF NOT EXISTS idx_resources_checksum
+    ON resources (checksum);
+
+CREATE TABLE IF NOT EXISTS metadata_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    resource_id BIGINT NOT NULL REFERENCES resources (id) ON DELETE CASCADE,
+    status VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    last_error VARCHAR(1000),
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_metadata_outbox_pending
+    ON metadata_outbox (next_attempt_at)
+    WHERE status = 'PENDING';
+
+CREATE INDEX IF NOT EXISTS idx_metadata_outbox_resource_id
+    ON metadata_outbox (resource_id);
+
+-- Resumable uploads; chunk bytes live in the blob store until the upload is completed
+CREATE TABLE IF NOT EXISTS upload_sessions (
+    id VARCHAR(36) PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    expires_at TIMESTAMPTZ NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_upload_sessions_expires_at
+    ON upload_sessions (expires_at);
+
+CREATE TABLE IF NOT EXISTS upload_chunks (
+    id BIGSERIAL PRIMARY KEY,
+    upload_id VARCHAR(36) NOT NULL REFERENCES upload_sessions (id) ON DELETE CASCADE,
+    chunk_index INT NOT NULL,
+    size BIGINT NOT NULL,
+    checksum CHAR(64) NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    UNIQUE (upload_id, chunk_index)
+);
@@ -0,0 +1,22 @@
+-- Adds storage tiers to databases created before blobs could be moved to the cold store.
+-- Runs after init.sql on a fresh database, where the columns already exist. Apply it to an existing one with
+--   psql -d resource-db -f init-scripts/resource-db/migrate-01-blob-tiers.sql
+ALTER TABLE blobs
+    ADD COLUMN IF NOT EXISTS tier VARCHAR(10) NOT NULL DEFAULT 'HOT',
+    ADD COLUMN IF NOT EXISTS stored_size BIGINT,
+    ADD COLUMN IF NOT EXISTS access_count BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS last_accessed_at TIMESTAMPTZ NOT NULL DEFAULT now();
+
+CREATE INDEX IF NOT EXISTS idx_blobs_hot_last_accessed
+    ON blobs (last_accessed_at)
+    WHERE tier = 'HOT' AND ref_count > 0;
+
+-- Demotions claimed by an instance that stopped before finishing them
+CREATE INDEX IF NOT EXISTS idx_blobs_demoting
+    ON blobs (updated_at)
+    WHERE tier = 'DEMOTING';
+
+-- Promotions claimed by an instance that stopped before finishing them
+CREATE INDEX IF NOT EXISTS idx_blobs_promoting
+    ON blobs (updated_at)
+    WHERE tier = 'PROMOTING';
@@ -3,7 +3,28 @@ CREATE TABLE IF NOT EXISTS songs (
     name VARCHAR(100) NOT NULL,
     artist VARCHAR(100) NOT NULL,
     album VARCHAR(100) NOT NULL,
-    duration VARCHAR(5) NOT NULL,
-    year VARCHAR(4) NOT NULL
+    -- Seconds; the API exposes durations as mm:ss
+    duration INT NOT NULL,
+    year SMALLINT NOT NULL
 );
 
+-- Filtered listings seek on (filter, id), so each page is a range scan of the page size. Equality filters keep
+-- ID order; year and duration ranges are ordered by (year, id) and (duration, id) so the same index serves them
+CREATE INDEX IF NOT EXISTS idx_songs_artist_id ON songs (artist, id);
+CREATE INDEX IF NOT EXISTS idx_songs_album_id ON songs (album, id);
+CREATE INDEX IF NOT EXISTS idx_songs_year_id ON songs (year, id);
+CREATE INDEX IF NOT EXISTS idx_songs_duration_id ON songs (duration, id);
+
+-- Name prefix search; C collation makes the index usable for LIKE 'prefix%' and for the (name, id) keyset.
+-- No pg_trgm index: the API only matches prefixes, and a trigram index cannot return rows in keyset order
+CREATE INDEX IF NOT EXISTS idx_songs_name_prefix ON songs ((lower(name) COLLATE "C"), id);
+
+-- Idempotency-Key values of POST /songs, written in the same statement as the song they created
+CREATE TABLE IF NOT EXISTS song_idempotency_keys (
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    song_id BIGINT NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_song_idempotency_keys_created_at
+    ON song_idempotency_keys (created_at);
@@ -0,0 +1,17 @@
+-- Converts databases created with VARCHAR duration ("mm:ss") and year to the numeric schema.
+-- Runs after init.sql on a fresh database, where it finds nothing to convert. Apply it to an existing one with
+--   psql -d song-db -f init-scripts/song-db/migrate-01-numeric-duration-year.sql
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1
+               FROM information_schema.columns
+               WHERE table_name = 'songs' AND column_name = 'duration' AND data_type = 'character varying') THEN
+        ALTER TABLE songs
+            ALTER COLUMN duration TYPE INT
+                USING split_part(duration, ':', 1)::INT * 60 + split_part(duration, ':', 2)::INT,
+            ALTER COLUMN year TYPE SMALLINT USING year::SMALLINT;
+    END IF;
+END
+$$;
+
+CREATE INDEX IF NOT EXISTS idx_songs_duration_id ON songs (duration, id);
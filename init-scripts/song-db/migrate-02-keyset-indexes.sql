@@ -0,0 +1,9 @@
+-- Adds the indexes the keyset-paginated GET /songs seeks on to databases created before they were in init.sql.
+-- Runs after init.sql on a fresh database, where they already exist. Apply it to an existing one with
+--   psql -d song-db -f init-scripts/song-db/migrate-02-keyset-indexes.sql
+-- CONCURRENTLY keeps the table writable while an index builds; psql runs each statement in its own transaction
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_songs_artist_id ON songs (artist, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_songs_album_id ON songs (album, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_songs_year_id ON songs (year, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_songs_duration_id ON songs (duration, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_songs_name_prefix ON songs ((lower(name) COLLATE "C"), id);
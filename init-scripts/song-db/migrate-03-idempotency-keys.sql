@@ -0,0 +1,11 @@
+-- Adds the table that records Idempotency-Key values of song creates to databases created before it was in init.sql.
+-- Runs after init.sql on a fresh database, where it already exists. Apply it to an existing one with
+--   psql -d song-db -f init-scripts/song-db/migrate-03-idempotency-keys.sql
+CREATE TABLE IF NOT EXISTS song_idempotency_keys (
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    song_id BIGINT NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_song_idempotency_keys_created_at
+    ON song_idempotency_keys (created_at);
@@ -0,0 +1,51 @@
+// k6 script comparing the concurrency ceiling with and without virtual threads.
+//
+//   docker compose --env-file .env --env-file load-tests/load-test.env up -d --build
+//   k6 run -e SONG_IDS=1,2,3 load-tests/concurrency-ceiling.js
+//   SPRING_THREADS_VIRTUAL_ENABLED=false docker compose --env-file .env --env-file load-tests/load-test.env \
+//       up -d song-service resource-service
+//   k6 run -e SONG_IDS=1,2,3 load-tests/concurrency-ceiling.js
+//
+// Virtual users ramp well past the 200 Tomcat platform threads. With platform threads latency climbs once
+// the pool is exhausted; with virtual threads it should stay flat until the Hikari pool becomes the limit,
+// at which point requests are answered with 503 instead of queueing.
+import http from 'k6/http';
+import { check } from 'k6';
+
+const songServiceUrl = __ENV.SONG_SERVICE_URL || 'http://localhost:8082';
+const resourceServiceUrl = __ENV.RESOURCE_SERVICE_URL || 'http://localhost:8081';
+const songIds = (__ENV.SONG_IDS || '1').split(',');
+const resourceIds = (__ENV.RESOURCE_IDS || '').split(',').filter((id) => id.length > 0);
+
+export const options = {
+    scenarios: {
+        ramp: {
+            executor: 'ramping-vus',
+            startVUs: 50,
+            stages: [
+                { duration: '30s', target: 200 },
+                { duration: '30s', target: 1000 },
+                { duration: '30s', target: 2000 },
+                { duration: '30s', target: 0 },
+            ],
+        },
+    },
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+        http_req_duration: ['p(99)<1000'],
+    },
+};
+
+export default function () {
+    const songId = songIds[Math.floor(Math.random() * songIds.length)];
+    check(http.get(`${songServiceUrl}/songs/${songId}`), {
+        'song found': (response) => response.status === 200,
+    });
+
+    if (resourceIds.length > 0) {
+        const resourceId = resourceIds[Math.floor(Math.random() * resourceIds.length)];
+        check(http.get(`${resourceServiceUrl}/resources/${resourceId}`, { headers: { Range: 'bytes=0-65535' } }), {
+            'resource range served': (response) => response.status === 206,
+        });
+    }
+}
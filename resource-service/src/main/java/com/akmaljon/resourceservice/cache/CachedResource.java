@@ -0,0 +1,16 @@
+package com.akmaljon.resourceservice.cache;
+
+import com.akmaljon.resourceservice.repository.ResourceMetadata;
+
+import java.nio.ByteBuffer;
+
+// Content is a read-only direct buffer, or null when only the row is cached and the bytes come from the BlobStore
+public record CachedResource(ResourceMetadata metadata, ByteBuffer content) {
+
+    // Rough heap cost of an entry without content: the record, the metadata and its strings
+    private static final int METADATA_WEIGHT = 512;
+
+    public int weight() {
+        return content != null ? METADATA_WEIGHT + content.capacity() : METADATA_WEIGHT;
+    }
+}
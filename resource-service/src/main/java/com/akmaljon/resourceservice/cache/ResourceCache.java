@@ -0,0 +1,90 @@
+package com.akmaljon.resourceservice.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+// Byte-bounded cache for GET /resources/{id}: a hit needs neither the database nor the BlobStore.
+// Caffeine's W-TinyLFU admission keeps a one-off download from pushing out a trending track, and the
+// weigher counts content bytes against the budget. Content sits in direct buffers, off the heap the GC
+// copies and compacts. An evicted buffer is not freed on eviction, a response may still be writing from it;
+// its memory goes back only when the GC collects the buffer object, so direct memory can run past the budget
+// until then. -XX:MaxDirectMemorySize caps it: an allocation that would exceed the cap first makes the JVM
+// collect to release dead buffers. The cap has to leave room for the budget and the buffers awaiting release
+@Component
+public class ResourceCache {
+
+    private final AsyncCache<Long, CachedResource> cache;
+    private final long maxContentSize;
+
+    public ResourceCache(MeterRegistry meterRegistry,
+                         @Value("${resource.cache.max-size}") DataSize maxSize,
+                         @Value("${resource.cache.max-content-size}") DataSize maxContentSize,
+                         @Value("${resource.cache.expire-after-write}") Duration expireAfterWrite) {
+        this.maxContentSize = maxContentSize.toBytes();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((Long id, CachedResource resource) -> resource.weight())
+                // Deletes on other instances are not seen here, the TTL caps how long they keep serving
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                // Loads read from the database and the BlobStore; keep them off the cache's internal lock
+                // so a virtual thread is not pinned while it waits
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .buildAsync();
+
+        // Publishes cache.gets{result=hit|miss}, cache.evictions and cache.size under cache=resources
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "resources");
+    }
+
+    // Whether content of this size may be cached; larger files are streamed and only their row is cached
+    public boolean isCacheableContent(long size) {
+        return size > 0 && size <= maxContentSize;
+    }
+
+    public CachedResource get(Long id, Function<Long, CachedResource> loader) {
+        try {
+            return cache.get(id, loader).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // For an entry found to be stale, e.g. its blob is gone
+    public void invalidate(Long id) {
+        cache.synchronous().invalidate(id);
+    }
+
+    // Drops the entries once the deleting transaction commits, so a concurrent read cannot cache them again
+    public void invalidateAfterCommit(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.synchronous().invalidateAll(ids);
+                }
+            });
+        } else {
+            cache.synchronous().invalidateAll(ids);
+        }
+    }
+}
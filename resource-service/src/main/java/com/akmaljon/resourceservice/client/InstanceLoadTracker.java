@@ -0,0 +1,119 @@
+package com.akmaljon.resourceservice.client;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Keeps in-flight counts, an EWMA of latency and an EWMA of the failure rate per song-service instance.
+// Fed by the load balancer lifecycle, which is the only place that knows which instance served a call
+@Component
+public class InstanceLoadTracker implements LoadBalancerLifecycle<Object, Object, ServiceInstance> {
+
+    private static final double LATENCY_SMOOTHING = 0.3;
+    private static final double FAILURE_SMOOTHING = 0.1;
+    private static final double INITIAL_LATENCY_MILLIS = 10.0;
+
+    private final Map<String, InstanceLoad> loads = new ConcurrentHashMap<>();
+    // The @LoadBalanced RestTemplate starts and completes each request on the calling thread
+    private final ThreadLocal<Long> requestStart = new ThreadLocal<>();
+
+    @Override
+    public boolean supports(Class requestContextClass, Class responseClass, Class serverTypeClass) {
+        return ServiceInstance.class.isAssignableFrom(serverTypeClass);
+    }
+
+    @Override
+    public void onStart(Request<Object> request) {
+    }
+
+    @Override
+    public void onStartRequest(Request<Object> request, Response<ServiceInstance> lbResponse) {
+        if (!lbResponse.hasServer()) {
+            return;
+        }
+        loadOf(lbResponse.getServer()).inFlight.incrementAndGet();
+        requestStart.set(System.nanoTime());
+    }
+
+    @Override
+    public void onComplete(CompletionContext<Object, ServiceInstance, Object> completionContext) {
+        Response<ServiceInstance> lbResponse = completionContext.getLoadBalancerResponse();
+        Long start = requestStart.get();
+        requestStart.remove();
+        if (lbResponse == null || !lbResponse.hasServer() || start == null) {
+            return;
+        }
+
+        InstanceLoad load = loadOf(lbResponse.getServer());
+        load.inFlight.decrementAndGet();
+        if (completionContext.status() == CompletionContext.Status.DISCARD) {
+            return;
+        }
+        load.record((System.nanoTime() - start) / 1_000_000.0, isFailure(completionContext));
+    }
+
+    // An instance that answers 5xx is as unhealthy as one that cannot be reached, but only the latter throws
+    private static boolean isFailure(CompletionContext<Object, ServiceInstance, Object> completionContext) {
+        if (completionContext.status() == CompletionContext.Status.FAILED) {
+            return true;
+        }
+        return completionContext.getClientResponse() instanceof ResponseData response
+                && response.getHttpStatus() != null
+                && response.getHttpStatus().is5xxServerError();
+    }
+
+    public int inFlight(ServiceInstance instance) {
+        return loadOf(instance).inFlight.get();
+    }
+
+    public double latencyMillis(ServiceInstance instance) {
+        return loadOf(instance).latencyMillis;
+    }
+
+    public double failureRate(ServiceInstance instance) {
+        return loadOf(instance).failureRate;
+    }
+
+    // Instances come and go with their Eureka registrations, once a few have piled up forget the ones no longer listed
+    public void retainOnly(Iterable<ServiceInstance> instances) {
+        if (loads.size() <= 16) {
+            return;
+        }
+        Set<String> live = new HashSet<>();
+        instances.forEach(instance -> live.add(keyOf(instance)));
+        loads.keySet().retainAll(live);
+    }
+
+    private InstanceLoad loadOf(ServiceInstance instance) {
+        return loads.computeIfAbsent(keyOf(instance), key -> new InstanceLoad());
+    }
+
+    private static String keyOf(ServiceInstance instance) {
+        return instance.getInstanceId() != null
+                ? instance.getInstanceId()
+                : instance.getHost() + ":" + instance.getPort();
+    }
+
+    private static final class InstanceLoad {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile double latencyMillis = INITIAL_LATENCY_MILLIS;
+        private volatile double failureRate;
+
+        // Lost updates between racing completions only nudge an average, which is fine for balancing
+        private void record(double sampleMillis, boolean failed) {
+            latencyMillis += LATENCY_SMOOTHING * (sampleMillis - latencyMillis);
+            failureRate += FAILURE_SMOOTHING * ((failed ? 1.0 : 0.0) - failureRate);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.akmaljon.resourceservice.client;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Power of two choices: samples two instances and sends the call to the one with the lower expected cost,
+// (in-flight + 1) x EWMA latency, inflated for recent failures and for instances outside the local zone.
+// Sampling rather than always taking the minimum keeps a burst from piling onto one freshly idle replica
+public class LeastLoadedServiceInstanceLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    private static final String ZONE_METADATA_KEY = "zone";
+    private static final double OTHER_ZONE_PENALTY = 2.0;
+    private static final double FAILURE_PENALTY = 10.0;
+
+    private final ObjectProvider<ServiceInstanceListSupplier> instanceListSupplierProvider;
+    private final InstanceLoadTracker loadTracker;
+    private final String zone;
+
+    public LeastLoadedServiceInstanceLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> instanceListSupplierProvider,
+                                                  InstanceLoadTracker loadTracker,
+                                                  String zone) {
+        this.instanceListSupplierProvider = instanceListSupplierProvider;
+        this.loadTracker = loadTracker;
+        this.zone = zone;
+    }
+
+    @Override
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = instanceListSupplierProvider
+                .getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return supplier.get(request).next().map(this::choose);
+    }
+
+    private Response<ServiceInstance> choose(List<ServiceInstance> instances) {
+        if (instances.isEmpty()) {
+            return new EmptyResponse();
+        }
+        if (instances.size() == 1) {
+            return new DefaultResponse(instances.get(0));
+        }
+
+        loadTracker.retainOnly(instances);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(instances.size());
+        int second = random.nextInt(instances.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        ServiceInstance a = instances.get(first);
+        ServiceInstance b = instances.get(second);
+        return new DefaultResponse(cost(a) <= cost(b) ? a : b);
+    }
+
+    private double cost(ServiceInstance instance) {
+        double cost = (loadTracker.inFlight(instance) + 1) * loadTracker.latencyMillis(instance);
+        cost *= 1.0 + FAILURE_PENALTY * loadTracker.failureRate(instance);
+        if (!zone.isEmpty() && !zone.equalsIgnoreCase(instance.getMetadata().get(ZONE_METADATA_KEY))) {
+            cost *= OTHER_ZONE_PENALTY;
+        }
+        return cost;
+    }
+}
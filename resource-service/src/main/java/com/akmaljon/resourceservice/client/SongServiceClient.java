@@ -1,58 +1,147 @@
 package com.akmaljon.resourceservice.client;
 
+import com.akmaljon.resourceservice.dto.IdsDto;
+import com.akmaljon.resourceservice.dto.SongBatchItemDto;
 import com.akmaljon.resourceservice.dto.SongMetadataDto;
+import com.akmaljon.resourceservice.dto.SongPageDto;
+import com.akmaljon.resourceservice.repository.IdRangeDigest;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Component
 public class SongServiceClient {
 
     private static final Logger logger = LoggerFactory.getLogger(SongServiceClient.class);
+    private static final HttpHeaders JSON_HEADERS = jsonHeaders();
+    private static final String CALL_TIMER = "song.service.calls";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final int SONG_PAGE_LIMIT = 100;
+    private static final int SONG_ID_PAGE_LIMIT = 10000;
 
     private final RestTemplate restTemplate;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final MeterRegistry meterRegistry;
     private final String songServiceUrl;
 
     public SongServiceClient(RestTemplate restTemplate,
+                             CircuitBreaker songServiceCircuitBreaker,
+                             Bulkhead songServiceBulkhead,
+                             MeterRegistry meterRegistry,
                              @Value("${song.service.url}") String songServiceUrl) {
         this.restTemplate = restTemplate;
+        this.circuitBreaker = songServiceCircuitBreaker;
+        this.bulkhead = songServiceBulkhead;
+        this.meterRegistry = meterRegistry;
         this.songServiceUrl = songServiceUrl;
     }
 
-    public void saveSongMetadata(SongMetadataDto metadata) {
+    // Every attempt to deliver the same metadata carries the same key, so one that already went through is
+    // answered as a replay. A 409 means another song holds the ID and reaches the caller like any other failure
+    public void saveSongMetadata(SongMetadataDto metadata, String idempotencyKey) {
         String url = songServiceUrl + "/songs";
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpHeaders headers = new HttpHeaders(JSON_HEADERS);
+        headers.set(IDEMPOTENCY_KEY_HEADER, idempotencyKey);
         HttpEntity<SongMetadataDto> request = new HttpEntity<>(metadata, headers);
 
-        try {
-            restTemplate.postForEntity(url, request, Void.class);
-            logger.info("Successfully saved song metadata for resource ID: {}", metadata.getId());
-        } catch (Exception e) {
-            // Log the error but don't fail the resource upload
-            // The song metadata can be added later if needed
-            logger.error("Failed to save song metadata to Song Service for resource ID {}: {}",
-                    metadata.getId(), e.getMessage());
+        call("save", () -> restTemplate.postForEntity(url, request, Void.class));
+        logger.info("Successfully saved song metadata for resource ID: {}", metadata.getId());
+    }
+
+    // Songs that already exist are skipped by song-service, so a retried batch is safe. Each item carries its
+    // own idempotency key, recorded for the songs the batch creates
+    public void saveSongMetadataBatch(List<SongBatchItemDto> metadata) {
+        if (metadata.isEmpty()) {
+            return;
+        }
+
+        String url = songServiceUrl + "/songs/batch";
+        HttpEntity<List<SongBatchItemDto>> request = new HttpEntity<>(metadata, JSON_HEADERS);
+
+        call("save-batch", () -> restTemplate.postForEntity(url, request, Void.class));
+        logger.info("Successfully saved song metadata batch of {} resources", metadata.size());
+    }
+
+    // Pages through the ID range by raising idFrom past the last ID of each full page
+    public List<Long> findSongIds(long idFrom, long idTo) {
+        List<Long> ids = new ArrayList<>();
+        long from = idFrom;
+        while (true) {
+            URI uri = UriComponentsBuilder.fromUriString(songServiceUrl + "/songs/ids")
+                    .queryParam("idFrom", from)
+                    .queryParam("idTo", idTo)
+                    .queryParam("limit", SONG_ID_PAGE_LIMIT)
+                    .build()
+                    .toUri();
+            Map<String, List<Long>> page = call("list-ids", () -> restTemplate.exchange(uri, HttpMethod.GET, null,
+                    new ParameterizedTypeReference<Map<String, List<Long>>>() {
+                    }).getBody());
+            List<Long> pageIds = page != null ? page.get("ids") : null;
+            if (pageIds == null || pageIds.isEmpty()) {
+                return ids;
+            }
+            ids.addAll(pageIds);
+            long lastId = pageIds.get(pageIds.size() - 1);
+            if (pageIds.size() < SONG_ID_PAGE_LIMIT || lastId >= idTo) {
+                return ids;
+            }
+            from = lastId + 1;
         }
     }
 
+    // Only the listed IDs are read, in chunks of one song-service page each
+    public List<SongMetadataDto> findSongMetadataByIds(List<Long> ids) {
+        List<SongMetadataDto> songs = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += SONG_PAGE_LIMIT) {
+            List<Long> chunk = ids.subList(i, Math.min(i + SONG_PAGE_LIMIT, ids.size()));
+            URI uri = UriComponentsBuilder.fromUriString(songServiceUrl + "/songs")
+                    .queryParam("id", chunk.stream().map(String::valueOf).collect(Collectors.joining(",")))
+                    .queryParam("limit", SONG_PAGE_LIMIT)
+                    .build()
+                    .toUri();
+            SongPageDto page = call("list", () -> restTemplate.getForObject(uri, SongPageDto.class));
+            if (page != null && page.getSongs() != null) {
+                songs.addAll(page.getSongs());
+            }
+        }
+        return songs;
+    }
+
+    // Songs left behind by a failed call are purged later by SongReconciler
     public void deleteSongMetadata(List<Long> ids) {
         if (ids == null || ids.isEmpty()) {
             return;
         }
 
-        String idsParam = String.join(",", ids.stream().map(String::valueOf).toList());
-        String url = songServiceUrl + "/songs?id=" + idsParam;
-
         try {
-            restTemplate.delete(url);
+            deleteSongs(ids);
             logger.info("Successfully deleted song metadata for resource IDs: {}", ids);
         } catch (Exception e) {
             // Log the error but don't fail the resource deletion
@@ -60,6 +149,66 @@ public class SongServiceClient {
                     ids, e.getMessage());
         }
     }
-}
 
+    // Unlike deleteSongMetadata, failures reach the caller
+    public void deleteSongs(List<Long> ids) {
+        // The JSON body variant is not bound by the CSV length limit of the query parameter
+        String url = songServiceUrl + "/songs";
+        HttpEntity<IdsDto> request = new HttpEntity<>(new IdsDto(ids), JSON_HEADERS);
+        call("delete", () -> restTemplate.exchange(url, HttpMethod.DELETE, request, Void.class));
+    }
 
+    public IdRangeDigest digestSongIds(long idFrom, long idTo) {
+        URI uri = UriComponentsBuilder.fromUriString(songServiceUrl + "/songs/digest")
+                .queryParam("idFrom", idFrom)
+                .queryParam("idTo", idTo)
+                .build()
+                .toUri();
+        Map<String, Long> digest = call("digest", () -> restTemplate.exchange(uri, HttpMethod.GET, null,
+                new ParameterizedTypeReference<Map<String, Long>>() {
+                }).getBody());
+        if (digest == null || digest.get("count") == null || digest.get("digest") == null) {
+            throw new IllegalStateException("Song service returned an incomplete digest for " + idFrom + ".." + idTo);
+        }
+        return new IdRangeDigest(digest.get("count"), digest.get("digest"));
+    }
+
+    // Bulkhead outside the circuit breaker: calls rejected for lack of capacity do not count as song-service failures.
+    // Rejections surface as BulkheadFullException or CallNotPermittedException and are retried like any other failure
+    private <T> T call(String operation, Supplier<T> request) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            return Bulkhead.decorateSupplier(bulkhead, CircuitBreaker.decorateSupplier(circuitBreaker, request)).get();
+        } catch (RuntimeException e) {
+            outcome = outcomeOf(e);
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(CALL_TIMER)
+                    .description("Calls from resource-service to song-service")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private static String outcomeOf(RuntimeException e) {
+        if (e instanceof HttpClientErrorException.Conflict) {
+            return "conflict";
+        }
+        if (e instanceof CallNotPermittedException || e instanceof BulkheadFullException) {
+            return "rejected";
+        }
+        if (e instanceof ResourceAccessException
+                && (e.getCause() instanceof SocketTimeoutException || e.getCause() instanceof HttpTimeoutException)) {
+            return "timeout";
+        }
+        return "failure";
+    }
+
+    private static HttpHeaders jsonHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return HttpHeaders.readOnlyHttpHeaders(headers);
+    }
+}
@@ -1,17 +1,75 @@
 package com.akmaljon.resourceservice.config;
 
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.restclient.RestTemplateBuilder;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClient;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 @Configuration
+@LoadBalancerClient(name = "song-service", configuration = SongServiceLoadBalancerConfig.class)
 public class AppConfig {
 
+    // The JDK client keeps connections alive and reuses them, and speaks HTTP/2 where the server offers it.
+    // Instance selection still goes through the @LoadBalanced interceptor. Built from the auto-configured
+    // builder so the client observation is registered and song-service calls show up in http.client.requests
     @Bean
     @LoadBalanced
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder,
+                                     @Value("${song.service.client.connect-timeout}") Duration connectTimeout,
+                                     @Value("${song.service.client.read-timeout}") Duration readTimeout,
+                                     @Value("${song.service.client.http2}") boolean http2) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .build();
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        return restTemplateBuilder
+                .requestFactory(() -> requestFactory)
+                .build();
     }
-}
 
+    // Opens when song-service keeps failing or answering slowly, so callers fail fast instead of queueing up.
+    // 4xx responses describe the request, not the health of song-service, and are not counted
+    @Bean
+    public CircuitBreaker songServiceCircuitBreaker(
+            @Value("${song.service.client.circuit-breaker.failure-rate-threshold}") float failureRateThreshold,
+            @Value("${song.service.client.circuit-breaker.slow-call-duration}") Duration slowCallDuration,
+            @Value("${song.service.client.circuit-breaker.sliding-window-size}") int slidingWindowSize,
+            @Value("${song.service.client.circuit-breaker.open-duration}") Duration openDuration) {
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallRateThreshold(failureRateThreshold)
+                .slowCallDurationThreshold(slowCallDuration)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(slidingWindowSize / 2)
+                .waitDurationInOpenState(openDuration)
+                .ignoreExceptions(HttpClientErrorException.class)
+                .build();
+        return CircuitBreaker.of("song-service", config);
+    }
+
+    // Caps concurrent calls to song-service; callers beyond the cap wait briefly and then fail
+    @Bean
+    public Bulkhead songServiceBulkhead(@Value("${song.service.client.max-concurrent-calls}") int maxConcurrentCalls,
+                                        @Value("${song.service.client.max-wait}") Duration maxWait) {
+        BulkheadConfig config = BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(maxWait)
+                .build();
+        return Bulkhead.of("song-service", config);
+    }
+}
@@ -0,0 +1,23 @@
+package com.akmaljon.resourceservice.config;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+@Configuration
+@ConditionalOnProperty(name = "resource.song-sync.mode", havingValue = "events")
+public class EventConfig {
+
+    // Created on startup when missing. The partition count caps how many song-service consumers work in parallel;
+    // replication is left to the broker default so the single-node local broker works as well
+    @Bean
+    public NewTopic resourceEventsTopic(@Value("${resource.events.topic}") String topic,
+                                        @Value("${resource.events.partitions}") int partitions) {
+        return TopicBuilder.name(topic)
+                .partitions(partitions)
+                .build();
+    }
+}
@@ -0,0 +1,28 @@
+package com.akmaljon.resourceservice.config;
+
+import com.akmaljon.resourceservice.client.InstanceLoadTracker;
+import com.akmaljon.resourceservice.client.LeastLoadedServiceInstanceLoadBalancer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+// Registered through @LoadBalancerClient on AppConfig and instantiated in the song-service child context.
+// Deliberately not a @Configuration so component scanning does not apply it to every client
+public class SongServiceLoadBalancerConfig {
+
+    @Bean
+    public ReactorLoadBalancer<ServiceInstance> songServiceLoadBalancer(Environment environment,
+                                                                        LoadBalancerClientFactory loadBalancerClientFactory,
+                                                                        InstanceLoadTracker loadTracker,
+                                                                        @Value("${spring.cloud.loadbalancer.zone:}") String zone) {
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        return new LeastLoadedServiceInstanceLoadBalancer(
+                loadBalancerClientFactory.getLazyProvider(serviceId, ServiceInstanceListSupplier.class),
+                loadTracker,
+                zone);
+    }
+}
@@ -0,0 +1,68 @@
+package com.akmaljon.resourceservice.config;
+
+import com.akmaljon.resourceservice.storage.BlobStore;
+import com.akmaljon.resourceservice.storage.FileSystemBlobStore;
+import com.akmaljon.resourceservice.storage.S3BlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.net.URI;
+import java.nio.file.Path;
+
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "resource.storage.type", havingValue = "filesystem", matchIfMissing = true)
+    public BlobStore fileSystemBlobStore(@Value("${resource.storage.filesystem.root}") Path rootDirectory) {
+        return new FileSystemBlobStore(rootDirectory);
+    }
+
+    // Compressed copies of rarely read blobs, meant for a cheaper volume than the primary root
+    @Bean
+    @ConditionalOnProperty(name = "resource.storage.type", havingValue = "filesystem", matchIfMissing = true)
+    public BlobStore coldBlobStore(@Value("${resource.storage.cold.filesystem.root}") Path rootDirectory) {
+        return new FileSystemBlobStore(rootDirectory);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "resource.storage.type", havingValue = "s3")
+    public S3Client s3Client(@Value("${resource.storage.s3.endpoint}") String endpoint,
+                             @Value("${resource.storage.s3.region}") String region,
+                             @Value("${resource.storage.s3.access-key}") String accessKey,
+                             @Value("${resource.storage.s3.secret-key}") String secretKey) {
+        return S3Client.builder()
+                .endpointOverride(URI.create(endpoint))
+                .region(Region.of(region))
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)))
+                // MinIO and most other S3-compatible stores only support path-style addressing
+                .forcePathStyle(true)
+                .build();
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "resource.storage.type", havingValue = "s3")
+    public BlobStore s3BlobStore(S3Client s3Client, @Value("${resource.storage.s3.bucket}") String bucket) {
+        S3BlobStore blobStore = new S3BlobStore(s3Client, bucket);
+        blobStore.createBucketIfMissing();
+        return blobStore;
+    }
+
+    // A separate bucket, so a lifecycle rule can put it on an infrequent-access storage class
+    @Bean(name = "coldBlobStore")
+    @ConditionalOnProperty(name = "resource.storage.type", havingValue = "s3")
+    public BlobStore coldS3BlobStore(S3Client s3Client, @Value("${resource.storage.cold.s3.bucket}") String bucket) {
+        S3BlobStore blobStore = new S3BlobStore(s3Client, bucket);
+        blobStore.createBucketIfMissing();
+        return blobStore;
+    }
+}
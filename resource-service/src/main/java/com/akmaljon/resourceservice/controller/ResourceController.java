@@ -1,39 +1,164 @@
 package com.akmaljon.resourceservice.controller;
 
+import com.akmaljon.resourceservice.cache.CachedResource;
+import com.akmaljon.resourceservice.dto.IdsDto;
+import com.akmaljon.resourceservice.repository.ResourceMetadata;
+import com.akmaljon.resourceservice.service.ResourceArchiveService;
 import com.akmaljon.resourceservice.service.ResourceService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/resources")
 public class ResourceController {
 
+    // Tomcat request attributes that hand the response body over to the connector's sendfile support
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final String APPLICATION_ZIP = "application/zip";
+    private static final long NO_ASYNC_TIMEOUT = -1;
+
     private final ResourceService resourceService;
+    private final ResourceArchiveService resourceArchiveService;
 
-    public ResourceController(ResourceService resourceService) {
+    public ResourceController(ResourceService resourceService, ResourceArchiveService resourceArchiveService) {
         this.resourceService = resourceService;
+        this.resourceArchiveService = resourceArchiveService;
     }
 
     @PostMapping(consumes = "audio/mpeg")
-    public ResponseEntity<Map<String, Long>> uploadResource(@RequestBody byte[] audioData) {
-        var id = resourceService.uploadResource(audioData);
+    public ResponseEntity<Map<String, Long>> uploadResource(InputStream audioStream) {
+        var id = resourceService.uploadResource(audioStream);
         return ResponseEntity.ok(id);
     }
 
+    // Either a CSV list of IDs or an inclusive fromId/toId range; without parameters the whole catalogue
+    @GetMapping(value = "/export", produces = APPLICATION_ZIP)
+    public ResponseEntity<StreamingResponseBody> exportResources(@RequestParam(value = "id", required = false) String csvIds,
+                                                                 @RequestParam(required = false) Long fromId,
+                                                                 @RequestParam(required = false) Long toId,
+                                                                 HttpServletRequest request) {
+        ResourceArchiveService.ExportSelection selection = resourceArchiveService.selectForExport(csvIds, fromId, toId);
+        // An export of the whole catalogue runs as long as it takes; only this request is exempt from the async timeout
+        WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest().setTimeout(NO_ASYNC_TIMEOUT);
+        StreamingResponseBody body = out -> resourceArchiveService.exportArchive(selection, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_ZIP))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("resources.zip").build().toString())
+                .body(body);
+    }
+
+    @PostMapping(value = "/import", consumes = APPLICATION_ZIP)
+    public ResponseEntity<Map<String, Long>> importResources(InputStream archive) {
+        return ResponseEntity.ok(resourceArchiveService.importArchive(archive));
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<byte[]> getResource(@PathVariable String id) {
-        byte[] audioData = resourceService.getResource(id);
+    public ResponseEntity<StreamingResponseBody> getResource(@PathVariable String id,
+                                                             ServletWebRequest webRequest,
+                                                             HttpServletRequest request) {
+        CachedResource cachedResource = resourceService.getResource(id);
+        ResourceMetadata resource = cachedResource.metadata();
+        String eTag = "\"" + resource.checksum() + "\"";
+        long lastModified = resource.createdAt().toEpochMilli();
+
+        if (webRequest.checkNotModified(eTag, lastModified)) {
+            return null;
+        }
+
+        long size = resource.size();
+        long start = 0;
+        long end = size - 1;
+        HttpStatus status = HttpStatus.OK;
 
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType("audio/mpeg"));
+        headers.setContentType(MediaType.parseMediaType(resource.contentType()));
+        headers.setETag(eTag);
+        headers.setLastModified(lastModified);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && isIfRangeSatisfied(request, eTag, lastModified)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                return rangeNotSatisfiable(size);
+            }
+
+            // Multipart byte ranges are not supported, the full content is a valid answer to such requests
+            if (ranges.size() == 1) {
+                try {
+                    start = ranges.get(0).getRangeStart(size);
+                    end = ranges.get(0).getRangeEnd(size);
+                } catch (IllegalArgumentException e) {
+                    return rangeNotSatisfiable(size);
+                }
+                if (start >= size || start > end) {
+                    return rangeNotSatisfiable(size);
+                }
+                status = HttpStatus.PARTIAL_CONTENT;
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+
+        long offset = start;
+        long length = end - start + 1;
+        headers.setContentLength(length);
+
+        if (cachedResource.content() != null) {
+            ByteBuffer content = cachedResource.content().slice(Math.toIntExact(offset), Math.toIntExact(length));
+            return new ResponseEntity<>(out -> writeBuffer(content, out), headers, status);
+        }
+
+        Optional<Path> localPath = resourceService.getLocalPath(resource);
+        if (localPath.isPresent() && isSendfileSupported(request)) {
+            // Tomcat writes the file region straight from the page cache to the socket after the headers
+            request.setAttribute(SENDFILE_FILENAME_ATTR, localPath.get().toString());
+            request.setAttribute(SENDFILE_START_ATTR, offset);
+            request.setAttribute(SENDFILE_END_ATTR, offset + length);
+            return new ResponseEntity<>(headers, status);
+        }
+
+        if (localPath.isPresent()) {
+            return new ResponseEntity<>(out -> transferFile(localPath.get(), offset, length, out), headers, status);
+        }
 
-        return new ResponseEntity<>(audioData, headers, HttpStatus.OK);
+        // Opened before the response is committed, so a blob that is gone can still be answered with 404
+        InputStream content = resourceService.openContent(resource, offset, length);
+        StreamingResponseBody body = out -> {
+            try (InputStream in = content) {
+                in.transferTo(out);
+            }
+        };
+        return new ResponseEntity<>(body, headers, status);
     }
 
     @DeleteMapping
@@ -41,6 +166,61 @@ public class ResourceController {
         var deletedIds = resourceService.deleteResources(csvIds);
         return ResponseEntity.ok(deletedIds);
     }
-}
 
+    // JSON body variant for bulk cleanups that do not fit into the CSV query parameter
+    @DeleteMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, List<Long>>> deleteResources(@Valid @RequestBody IdsDto idsDto) {
+        var deletedIds = resourceService.deleteResources(idsDto.getIds());
+        return ResponseEntity.ok(deletedIds);
+    }
+
+    private boolean isIfRangeSatisfied(HttpServletRequest request, String eTag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(eTag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private boolean isSendfileSupported(HttpServletRequest request) {
+        return HttpMethod.GET.matches(request.getMethod())
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR));
+    }
 
+    private ResponseEntity<StreamingResponseBody> rangeNotSatisfiable(long size) {
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                .build();
+    }
+
+    private void writeBuffer(ByteBuffer content, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        while (content.hasRemaining()) {
+            target.write(content);
+        }
+    }
+
+    // Fallback when the connector cannot sendfile: transferTo still avoids staging the file on the heap
+    private void transferFile(Path path, long offset, long length, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = offset;
+            long remaining = length;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.akmaljon.resourceservice.controller;
+
+import com.akmaljon.resourceservice.dto.CompleteUploadDto;
+import com.akmaljon.resourceservice.dto.UploadStatusDto;
+import com.akmaljon.resourceservice.service.UploadSessionService;
+import jakarta.validation.Valid;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.util.Map;
+
+// Resumable alternative to POST /resources for large files:
+// POST /resources/uploads, then PUT /resources/uploads/{uploadId}/chunks/{index} for each chunk
+// with its SHA-256 in X-Chunk-Checksum, then POST /resources/uploads/{uploadId}/complete
+@RestController
+@RequestMapping("/resources/uploads")
+public class UploadController {
+
+    private static final String CHUNK_CHECKSUM_HEADER = "X-Chunk-Checksum";
+
+    private final UploadSessionService uploadSessionService;
+
+    public UploadController(UploadSessionService uploadSessionService) {
+        this.uploadSessionService = uploadSessionService;
+    }
+
+    @PostMapping
+    public ResponseEntity<Map<String, String>> initiateUpload() {
+        return ResponseEntity.ok(uploadSessionService.initiateUpload());
+    }
+
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<UploadStatusDto> getUploadStatus(@PathVariable String uploadId) {
+        return ResponseEntity.ok(uploadSessionService.getUploadStatus(uploadId));
+    }
+
+    @PutMapping(value = "/{uploadId}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Map<String, Object>> uploadChunk(@PathVariable String uploadId,
+                                                           @PathVariable int index,
+                                                           @RequestHeader(value = CHUNK_CHECKSUM_HEADER, required = false) String checksum,
+                                                           InputStream body) {
+        return ResponseEntity.ok(uploadSessionService.storeChunk(uploadId, index, checksum, body));
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<Map<String, Long>> completeUpload(@PathVariable String uploadId,
+                                                            @Valid @RequestBody CompleteUploadDto completeUploadDto) {
+        return ResponseEntity.ok(uploadSessionService.completeUpload(uploadId, completeUploadDto.getChunkCount()));
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<Void> abortUpload(@PathVariable String uploadId) {
+        uploadSessionService.abortUpload(uploadId);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,20 @@
+package com.akmaljon.resourceservice.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CompleteUploadDto {
+
+    // Chunks 0 to chunkCount - 1 must all have been received
+    @NotNull(message = "Chunk count is required")
+    @Positive(message = "Chunk count must be a positive integer")
+    @Max(value = 10000, message = "At most 10000 chunks are allowed per upload")
+    private Integer chunkCount;
+}
@@ -0,0 +1,21 @@
+package com.akmaljon.resourceservice.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+// One song of a batch delivery, carrying the key song-service records for it like the Idempotency-Key
+// header of a single POST /songs
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class SongBatchItemDto extends SongMetadataDto {
+
+    private String idempotencyKey;
+
+    public SongBatchItemDto(SongMetadataDto metadata, String idempotencyKey) {
+        super(metadata.getId(), metadata.getName(), metadata.getArtist(), metadata.getAlbum(),
+                metadata.getDuration(), metadata.getYear());
+        this.idempotencyKey = idempotencyKey;
+    }
+}
@@ -0,0 +1,18 @@
+package com.akmaljon.resourceservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Response of song-service's GET /songs
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SongPageDto {
+
+    private List<SongMetadataDto> songs;
+
+    private String nextCursor;
+}
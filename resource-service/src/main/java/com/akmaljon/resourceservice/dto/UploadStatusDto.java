@@ -0,0 +1,19 @@
+package com.akmaljon.resourceservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadStatusDto {
+
+    private String uploadId;
+    private Instant expiresAt;
+    // Indexes of the chunks stored so far, a resuming client sends only the missing ones
+    private List<Integer> receivedChunks;
+}
@@ -0,0 +1,34 @@
+package com.akmaljon.resourceservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Metadata extracted from a blob once, reused for every later upload of the same content
+@Entity
+@Table(name = "blob_metadata")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BlobMetadata {
+
+    @Id
+    @Column(length = 64)
+    private String checksum;
+
+    @Column(nullable = false, length = 100)
+    private String name;
+
+    @Column(nullable = false, length = 100)
+    private String artist;
+
+    @Column(nullable = false, length = 100)
+    private String album;
+
+    @Column(nullable = false, length = 5)
+    private String duration;
+
+    @Column(nullable = false, length = 4)
+    private String year;
+}
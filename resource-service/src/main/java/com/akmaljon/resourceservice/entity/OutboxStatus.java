@@ -0,0 +1,6 @@
+package com.akmaljon.resourceservice.entity;
+
+public enum OutboxStatus {
+    PENDING,
+    FAILED
+}
@@ -4,9 +4,8 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.hibernate.annotations.JdbcTypeCode;
 
-import java.sql.Types;
+import java.time.Instant;
 
 @Entity
 @Table(name = "resources")
@@ -19,10 +18,20 @@ public class Resource {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Lob
-    @JdbcTypeCode(Types.BINARY)
+    // Pointer to the audio bytes in the configured BlobStore
+    @Column(name = "storage_key", nullable = false)
+    private String storageKey;
+
     @Column(nullable = false)
-    private byte[] data;
-}
+    private Long size;
 
+    // Hex encoded SHA-256 of the audio bytes
+    @Column(nullable = false, length = 64)
+    private String checksum;
 
+    @Column(name = "content_type", nullable = false, length = 100)
+    private String contentType;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
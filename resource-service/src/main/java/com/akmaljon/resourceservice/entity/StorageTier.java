@@ -0,0 +1,14 @@
+package com.akmaljon.resourceservice.entity;
+
+public enum StorageTier {
+    HOT,
+    // Claimed by a demotion that is copying it to the cold store; still read from the primary store
+    DEMOTING,
+    COLD,
+    // Claimed by a promotion that is copying it back to the primary store; still read from the cold store
+    PROMOTING;
+
+    public boolean isReadFromColdStore() {
+        return this == COLD || this == PROMOTING;
+    }
+}
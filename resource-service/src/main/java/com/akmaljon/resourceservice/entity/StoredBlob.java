@@ -0,0 +1,33 @@
+package com.akmaljon.resourceservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// One row per distinct audio content, shared by every resource that uploaded the same bytes
+@Entity
+@Table(name = "blobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredBlob {
+
+    @Id
+    @Column(length = 64)
+    private String checksum;
+
+    @Column(name = "storage_key", nullable = false)
+    private String storageKey;
+
+    @Column(nullable = false)
+    private Long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
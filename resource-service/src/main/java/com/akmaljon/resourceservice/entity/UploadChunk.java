@@ -0,0 +1,35 @@
+package com.akmaljon.resourceservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "upload_chunks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "upload_id", nullable = false, length = 36)
+    private String uploadId;
+
+    @Column(name = "chunk_index", nullable = false)
+    private int chunkIndex;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(nullable = false, length = 64)
+    private String checksum;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
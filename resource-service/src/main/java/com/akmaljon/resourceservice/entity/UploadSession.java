@@ -0,0 +1,31 @@
+package com.akmaljon.resourceservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "upload_sessions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private UploadStatus status;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    // Sessions not completed by then are removed together with their chunks
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
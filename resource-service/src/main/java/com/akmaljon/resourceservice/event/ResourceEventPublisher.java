@@ -0,0 +1,157 @@
+package com.akmaljon.resourceservice.event;
+
+import com.akmaljon.resourceservice.dto.IdsDto;
+import com.akmaljon.resourceservice.dto.SongBatchItemDto;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Replaces the HTTP calls to song-service when resource.song-sync.mode=events. Every event is keyed by a resource
+// ID and placed by the producer's default partitioner, so song-service sees the delete of a resource after its
+// create; a delete of many resources is split into one event per partition, keyed by an ID of that partition.
+// Adding partitions would move keys between partitions and break that order, so the topic's partition count is
+// pinned in resource.events.partitions and nothing is published while the broker reports another count
+@Component
+@ConditionalOnProperty(name = "resource.song-sync.mode", havingValue = "events")
+public class ResourceEventPublisher {
+
+    public static final String TYPE_HEADER = "event-type";
+    public static final String RESOURCE_CREATED = "ResourceCreated";
+    public static final String RESOURCES_DELETED = "ResourcesDeleted";
+
+    private static final Logger logger = LoggerFactory.getLogger(ResourceEventPublisher.class);
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final String topic;
+    private final int partitions;
+    private final Duration sendTimeout;
+
+    public ResourceEventPublisher(KafkaTemplate<String, String> kafkaTemplate,
+                                  ObjectMapper objectMapper,
+                                  @Value("${resource.events.topic}") String topic,
+                                  @Value("${resource.events.partitions}") int partitions,
+                                  @Value("${resource.events.send-timeout}") Duration sendTimeout) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.topic = topic;
+        this.partitions = partitions;
+        this.sendTimeout = sendTimeout;
+    }
+
+    // Returns once the broker has acknowledged every event; song-service skips songs that already exist,
+    // so a batch published again after a partial failure is safe
+    public void publishCreated(List<SongBatchItemDto> metadata) {
+        if (metadata.isEmpty()) {
+            return;
+        }
+
+        checkPartitionCount();
+        List<CompletableFuture<SendResult<String, String>>> sends = new ArrayList<>(metadata.size());
+        for (SongBatchItemDto song : metadata) {
+            sends.add(send(RESOURCE_CREATED, song.getId(), song));
+        }
+        await(sends);
+        logger.info("Published {} resource created events", metadata.size());
+    }
+
+    public void publishDeleted(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        checkPartitionCount();
+        Map<Integer, List<Long>> idsByPartition = new TreeMap<>();
+        for (Long id : ids) {
+            idsByPartition.computeIfAbsent(partition(id), key -> new ArrayList<>()).add(id);
+        }
+
+        // The first ID keys the event, the default partitioner then places it with the creates of all its IDs
+        List<CompletableFuture<SendResult<String, String>>> sends = new ArrayList<>(idsByPartition.size());
+        idsByPartition.values().forEach(partitionIds ->
+                sends.add(send(RESOURCES_DELETED, partitionIds.get(0), new IdsDto(partitionIds))));
+        await(sends);
+        logger.info("Published resources deleted events for resource IDs: {}", ids);
+    }
+
+    // A rolled back delete must not reach song-service. Failures are only logged, like the HTTP delete:
+    // songs left behind are purged by SongReconciler
+    public void publishDeletedAfterCommit(List<Long> ids) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publishDeletedQuietly(ids);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publishDeletedQuietly(ids);
+            }
+        });
+    }
+
+    private void publishDeletedQuietly(List<Long> ids) {
+        try {
+            publishDeleted(ids);
+        } catch (Exception e) {
+            logger.error("Failed to publish resources deleted event for resource IDs {}: {}", ids, e.getMessage());
+        }
+    }
+
+    private CompletableFuture<SendResult<String, String>> send(String type, Long key, Object payload) {
+        ProducerRecord<String, String> record = new ProducerRecord<>(topic, key.toString(),
+                objectMapper.writeValueAsString(payload));
+        record.headers().add(TYPE_HEADER, type.getBytes(StandardCharsets.UTF_8));
+        return kafkaTemplate.send(record);
+    }
+
+    // The producer caches topic metadata, so this does not cost a round-trip per call. Failing here leaves
+    // creates in the outbox to be retried once the configuration matches the topic again
+    private void checkPartitionCount() {
+        int actual = kafkaTemplate.partitionsFor(topic).size();
+        if (actual != partitions) {
+            throw new IllegalStateException("Topic " + topic + " has " + actual + " partitions, resource.events.partitions is "
+                    + partitions + "; publishing would reorder the events of existing resources");
+        }
+    }
+
+    // What the default partitioner picks for a record keyed by this ID with the StringSerializer
+    private int partition(Long resourceId) {
+        byte[] key = resourceId.toString().getBytes(StandardCharsets.UTF_8);
+        return Utils.toPositive(Utils.murmur2(key)) % partitions;
+    }
+
+    private void await(List<CompletableFuture<SendResult<String, String>>> sends) {
+        try {
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new))
+                    .get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Broker rejected resource event: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Resource events not acknowledged within " + sendTimeout, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while publishing resource events", e);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.akmaljon.resourceservice.exception;
+
+// The store has no blob under the key, e.g. because the resource was deleted on another instance
+public class BlobNotFoundException extends BlobStorageException {
+
+    public BlobNotFoundException(String key, Throwable cause) {
+        super("Blob " + key + " not found", cause);
+    }
+}
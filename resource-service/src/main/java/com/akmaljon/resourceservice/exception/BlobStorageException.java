@@ -0,0 +1,12 @@
+package com.akmaljon.resourceservice.exception;
+
+public class BlobStorageException extends RuntimeException {
+
+    public BlobStorageException(String message) {
+        super(message);
+    }
+
+    public BlobStorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
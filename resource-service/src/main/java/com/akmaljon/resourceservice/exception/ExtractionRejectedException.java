@@ -0,0 +1,8 @@
+package com.akmaljon.resourceservice.exception;
+
+public class ExtractionRejectedException extends RuntimeException {
+
+    public ExtractionRejectedException() {
+        super("Metadata extraction queue is full");
+    }
+}
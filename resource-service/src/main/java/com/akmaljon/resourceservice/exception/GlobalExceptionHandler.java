@@ -2,9 +2,12 @@ package com.akmaljon.resourceservice.exception;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.HttpMediaTypeNotSupportedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -34,6 +37,30 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
     }
 
+    @ExceptionHandler(UploadNotFoundException.class)
+    public ResponseEntity<Map<String, Object>> handleUploadNotFound(UploadNotFoundException ex) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("errorMessage", ex.getMessage());
+        errorResponse.put("errorCode", "404");
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+    }
+
+    @ExceptionHandler(InvalidUploadException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidUpload(InvalidUploadException ex) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("errorMessage", ex.getMessage());
+        errorResponse.put("errorCode", "400");
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+    }
+
+    @ExceptionHandler(UploadConflictException.class)
+    public ResponseEntity<Map<String, Object>> handleUploadConflict(UploadConflictException ex) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("errorMessage", ex.getMessage());
+        errorResponse.put("errorCode", "409");
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+    }
+
     @ExceptionHandler(InvalidCsvFormatException.class)
     public ResponseEntity<Map<String, Object>> handleInvalidCsvFormat(InvalidCsvFormatException ex) {
         Map<String, Object> errorResponse = new HashMap<>();
@@ -84,6 +111,28 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
     }
 
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<Map<String, Object>> handleServiceOverloaded(ServiceOverloadedException ex) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("errorMessage", ex.getMessage());
+        errorResponse.put("errorCode", "503");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
+
+    // Connection pool exhausted or database unreachable: the request can be retried shortly
+    @ExceptionHandler({CannotCreateTransactionException.class, CannotGetJdbcConnectionException.class})
+    public ResponseEntity<Map<String, Object>> handleDatabaseUnavailable(Exception ex) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("errorMessage", "Service is temporarily unavailable, please retry");
+        errorResponse.put("errorCode", "503");
+        logger.warn("Database unavailable: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(errorResponse);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleGenericException(Exception ex) {
         Map<String, Object> errorResponse = new HashMap<>();
@@ -0,0 +1,8 @@
+package com.akmaljon.resourceservice.exception;
+
+public class InvalidUploadException extends RuntimeException {
+
+    public InvalidUploadException(String message) {
+        super(message);
+    }
+}
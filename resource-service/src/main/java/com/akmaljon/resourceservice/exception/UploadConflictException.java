@@ -0,0 +1,8 @@
+package com.akmaljon.resourceservice.exception;
+
+public class UploadConflictException extends RuntimeException {
+
+    public UploadConflictException(String uploadId) {
+        super("Upload with ID=" + uploadId + " is already being completed");
+    }
+}
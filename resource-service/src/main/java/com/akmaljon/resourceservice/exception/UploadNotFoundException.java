@@ -0,0 +1,8 @@
+package com.akmaljon.resourceservice.exception;
+
+public class UploadNotFoundException extends RuntimeException {
+
+    public UploadNotFoundException(String uploadId) {
+        super("Upload with ID=" + uploadId + " not found");
+    }
+}
@@ -0,0 +1,9 @@
+package com.akmaljon.resourceservice.metadata;
+
+import java.io.InputStream;
+
+@FunctionalInterface
+public interface ByteRangeSource {
+
+    InputStream open(long offset, long length);
+}
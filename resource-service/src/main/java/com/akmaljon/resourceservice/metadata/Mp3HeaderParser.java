@@ -0,0 +1,355 @@
+package com.akmaljon.resourceservice.metadata;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// Reads only the ID3v2 tag, the ID3v1 trailer and the first MPEG frames instead of scanning every frame.
+// Returns null whenever it cannot decide with confidence, callers are expected to fall back to a full parse
+public class Mp3HeaderParser {
+
+    private static final int ID3V2_HEADER_LENGTH = 10;
+    private static final int ID3V2_FOOTER_LENGTH = 10;
+    private static final int ID3V1_TAG_LENGTH = 128;
+    private static final int MAX_TEXT_FRAME_LENGTH = 64 * 1024;
+    // Largest possible MPEG audio frame (MPEG 2.5 Layer II, 160 kbit/s, 8 kHz, padded) plus the next header
+    private static final int MAX_FRAME_LENGTH = 2881;
+    // A stream without a VBR header only counts as constant bitrate once this many frames agree on the bitrate
+    private static final int CBR_CHECK_FRAMES = 8;
+    private static final int SYNC_SCAN_WINDOW = 16 * 1024 + CBR_CHECK_FRAMES * MAX_FRAME_LENGTH + 4;
+    private static final int TAG_BUFFER_SIZE = 8 * 1024;
+
+    private static final String TITLE = "title";
+    private static final String ARTIST = "artist";
+    private static final String ALBUM = "album";
+    private static final String YEAR = "year";
+
+    private static final Map<String, String> TEXT_FRAMES = Map.ofEntries(
+            Map.entry("TIT2", TITLE), Map.entry("TT2", TITLE),
+            Map.entry("TPE1", ARTIST), Map.entry("TP1", ARTIST),
+            Map.entry("TALB", ALBUM), Map.entry("TAL", ALBUM),
+            Map.entry("TYER", YEAR), Map.entry("TDRC", YEAR), Map.entry("TYE", YEAR)
+    );
+
+    // Bitrates in kbit/s indexed by [MPEG 1 ? 0 : 1][layer - 1][bitrate index]
+    private static final int[][][] BITRATES = {
+            {
+                    {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+                    {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+                    {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320}
+            },
+            {
+                    {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+                    {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+                    {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+            }
+    };
+
+    // Sample rates in Hz indexed by [version bits][sample rate index], version bits 1 are reserved
+    private static final int[][] SAMPLE_RATES = {
+            {11025, 12000, 8000},
+            {0, 0, 0},
+            {22050, 24000, 16000},
+            {44100, 48000, 32000}
+    };
+
+    public Mp3Headers parse(long size, ByteRangeSource source) throws IOException {
+        if (size < ID3V2_HEADER_LENGTH) {
+            return null;
+        }
+
+        Map<String, String> tags = new HashMap<>();
+        long audioStart = 0;
+
+        byte[] header = readRange(source, 0, ID3V2_HEADER_LENGTH);
+        if (header.length == ID3V2_HEADER_LENGTH && header[0] == 'I' && header[1] == 'D' && header[2] == '3') {
+            int majorVersion = header[3] & 0xFF;
+            int flags = header[5] & 0xFF;
+            long tagSize = syncsafe(header, 6);
+            // Unsynchronised tags are rare and need byte-level rewriting, leave them to the full parser
+            if (majorVersion < 2 || majorVersion > 4 || (flags & 0x80) != 0) {
+                return null;
+            }
+
+            boolean hasFooter = majorVersion == 4 && (flags & 0x10) != 0;
+            audioStart = ID3V2_HEADER_LENGTH + tagSize + (hasFooter ? ID3V2_FOOTER_LENGTH : 0);
+            if (audioStart >= size) {
+                return null;
+            }
+
+            try (InputStream in = new BufferedInputStream(source.open(ID3V2_HEADER_LENGTH, tagSize), TAG_BUFFER_SIZE)) {
+                if (!readId3v2Frames(in, majorVersion, flags, tagSize, tags)) {
+                    return null;
+                }
+            }
+        }
+
+        byte[] id3v1 = size - audioStart >= ID3V1_TAG_LENGTH
+                ? readRange(source, size - ID3V1_TAG_LENGTH, ID3V1_TAG_LENGTH)
+                : new byte[0];
+        boolean hasId3v1 = id3v1.length == ID3V1_TAG_LENGTH && id3v1[0] == 'T' && id3v1[1] == 'A' && id3v1[2] == 'G';
+        if (hasId3v1) {
+            // ID3v2 values win field by field, ID3v1 only fills the gaps
+            tags.putIfAbsent(TITLE, latin1(id3v1, 3, 30));
+            tags.putIfAbsent(ARTIST, latin1(id3v1, 33, 30));
+            tags.putIfAbsent(ALBUM, latin1(id3v1, 63, 30));
+            tags.putIfAbsent(YEAR, latin1(id3v1, 93, 4));
+        }
+
+        long audioLength = size - audioStart - (hasId3v1 ? ID3V1_TAG_LENGTH : 0);
+        byte[] window = readRange(source, audioStart, Math.min(audioLength, SYNC_SCAN_WINDOW));
+        Double duration = readDuration(window, audioLength);
+        if (duration == null) {
+            return null;
+        }
+
+        return new Mp3Headers(tags.get(TITLE), tags.get(ARTIST), tags.get(ALBUM), tags.get(YEAR), duration);
+    }
+
+    private boolean readId3v2Frames(InputStream in, int majorVersion, int flags, long tagSize,
+                                    Map<String, String> tags) throws IOException {
+        long remaining = tagSize;
+
+        if ((flags & 0x40) != 0) {
+            // ID3v2.2 uses this bit for compression, which has never been specified
+            if (majorVersion == 2) {
+                return false;
+            }
+            byte[] sizeBytes = in.readNBytes(4);
+            if (sizeBytes.length < 4) {
+                return false;
+            }
+            long extendedSize = majorVersion == 4 ? syncsafe(sizeBytes, 0) - 4 : int32(sizeBytes, 0);
+            if (extendedSize < 0 || extendedSize > remaining - 4) {
+                return false;
+            }
+            in.skipNBytes(extendedSize);
+            remaining -= 4 + extendedSize;
+        }
+
+        int frameHeaderLength = majorVersion == 2 ? 6 : 10;
+        while (remaining >= frameHeaderLength && tags.size() < 4) {
+            byte[] frameHeader = in.readNBytes(frameHeaderLength);
+            if (frameHeader.length < frameHeaderLength || frameHeader[0] == 0) {
+                // Reached the padding after the last frame
+                break;
+            }
+            remaining -= frameHeaderLength;
+
+            String frameId;
+            long frameSize;
+            int frameFlags = 0;
+            if (majorVersion == 2) {
+                frameId = new String(frameHeader, 0, 3, StandardCharsets.ISO_8859_1);
+                frameSize = int24(frameHeader, 3);
+            } else {
+                frameId = new String(frameHeader, 0, 4, StandardCharsets.ISO_8859_1);
+                frameSize = majorVersion == 4 ? syncsafe(frameHeader, 4) : int32(frameHeader, 4);
+                frameFlags = ((frameHeader[8] & 0xFF) << 8) | (frameHeader[9] & 0xFF);
+            }
+            if (frameSize < 0 || frameSize > remaining) {
+                return false;
+            }
+
+            String field = TEXT_FRAMES.get(frameId);
+            if (field == null || tags.containsKey(field)) {
+                // Attached pictures and other frames are skipped without being read into memory
+                in.skipNBytes(frameSize);
+            } else {
+                if (hasUnsupportedFrameFlags(majorVersion, frameFlags) || frameSize > MAX_TEXT_FRAME_LENGTH) {
+                    return false;
+                }
+                String value = decodeText(in.readNBytes((int) frameSize));
+                if (value != null && !value.isEmpty()) {
+                    tags.put(field, value);
+                }
+            }
+            remaining -= frameSize;
+        }
+        return true;
+    }
+
+    private boolean hasUnsupportedFrameFlags(int majorVersion, int frameFlags) {
+        if (majorVersion == 3) {
+            // Compression, encryption, grouping identity
+            return (frameFlags & 0x00E0) != 0;
+        }
+        // Grouping identity, compression, encryption, unsynchronisation, data length indicator
+        return majorVersion == 4 && (frameFlags & 0x004F) != 0;
+    }
+
+    private Double readDuration(byte[] window, long audioLength) {
+        for (int position = 0; position + 4 <= window.length; position++) {
+            FrameHeader frame = FrameHeader.parse(window, position);
+            if (frame == null) {
+                continue;
+            }
+
+            // Require a second, consistent header right after the first frame to rule out false syncs
+            int nextPosition = position + frame.frameLength();
+            if (nextPosition + 4 > window.length) {
+                return null;
+            }
+            FrameHeader next = FrameHeader.parse(window, nextPosition);
+            if (next == null || next.versionBits() != frame.versionBits() || next.layer() != frame.layer()
+                    || next.sampleRate() != frame.sampleRate()) {
+                continue;
+            }
+
+            long frameCount = readXingFrameCount(window, position, frame);
+            if (frameCount <= 0) {
+                frameCount = readVbriFrameCount(window, position);
+            }
+            if (frameCount > 0) {
+                return frameCount * (double) frame.samplesPerFrame() / frame.sampleRate();
+            }
+
+            // Without a VBR header the stream is only safe to treat as constant bitrate if the bitrate holds
+            if (!hasConstantBitrate(window, position, frame, audioLength)) {
+                return null;
+            }
+            return (audioLength - position) * 8.0 / (frame.bitrate() * 1000.0);
+        }
+        return null;
+    }
+
+    // Walks CBR_CHECK_FRAMES frames from the first one, or every frame when the audio ends sooner. A VBR file
+    // without a Xing or VBRI header often starts with a few frames at the same bitrate, so two are not enough
+    private boolean hasConstantBitrate(byte[] window, int position, FrameHeader first, long audioLength) {
+        int frames = 0;
+        while (frames < CBR_CHECK_FRAMES) {
+            if (position >= audioLength) {
+                return frames >= 2;
+            }
+            if (position + 4 > window.length) {
+                return false;
+            }
+            FrameHeader frame = FrameHeader.parse(window, position);
+            if (frame == null || frame.versionBits() != first.versionBits() || frame.layer() != first.layer()
+                    || frame.sampleRate() != first.sampleRate() || frame.bitrate() != first.bitrate()) {
+                return false;
+            }
+            frames++;
+            position += frame.frameLength();
+        }
+        return true;
+    }
+
+    private long readXingFrameCount(byte[] window, int position, FrameHeader frame) {
+        int offset = position + 4 + frame.sideInfoLength();
+        if (offset + 12 > window.length) {
+            return -1;
+        }
+        boolean xing = window[offset] == 'X' && window[offset + 1] == 'i' && window[offset + 2] == 'n' && window[offset + 3] == 'g';
+        boolean info = window[offset] == 'I' && window[offset + 1] == 'n' && window[offset + 2] == 'f' && window[offset + 3] == 'o';
+        if (!xing && !info) {
+            return -1;
+        }
+        long flags = int32(window, offset + 4);
+        return (flags & 0x1) != 0 ? int32(window, offset + 8) : -1;
+    }
+
+    private long readVbriFrameCount(byte[] window, int position) {
+        // The VBRI header always sits 32 bytes after the frame header
+        int offset = position + 4 + 32;
+        if (offset + 18 > window.length) {
+            return -1;
+        }
+        boolean vbri = window[offset] == 'V' && window[offset + 1] == 'B' && window[offset + 2] == 'R' && window[offset + 3] == 'I';
+        return vbri ? int32(window, offset + 14) : -1;
+    }
+
+    private String decodeText(byte[] data) {
+        if (data.length < 2) {
+            return null;
+        }
+
+        Charset charset = switch (data[0]) {
+            case 0 -> StandardCharsets.ISO_8859_1;
+            case 1 -> StandardCharsets.UTF_16;
+            case 2 -> StandardCharsets.UTF_16BE;
+            case 3 -> StandardCharsets.UTF_8;
+            default -> null;
+        };
+        if (charset == null) {
+            return null;
+        }
+
+        String text = new String(data, 1, data.length - 1, charset);
+        // Multiple values are separated by null characters, the first one is the primary value
+        int terminator = text.indexOf('\0');
+        return (terminator >= 0 ? text.substring(0, terminator) : text).trim();
+    }
+
+    private String latin1(byte[] data, int offset, int length) {
+        String text = new String(data, offset, length, StandardCharsets.ISO_8859_1);
+        int terminator = text.indexOf('\0');
+        String value = (terminator >= 0 ? text.substring(0, terminator) : text).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private byte[] readRange(ByteRangeSource source, long offset, long length) throws IOException {
+        try (InputStream in = source.open(offset, length)) {
+            return in.readNBytes((int) length);
+        }
+    }
+
+    private static long syncsafe(byte[] data, int offset) {
+        return ((data[offset] & 0x7FL) << 21) | ((data[offset + 1] & 0x7FL) << 14)
+                | ((data[offset + 2] & 0x7FL) << 7) | (data[offset + 3] & 0x7FL);
+    }
+
+    private static long int32(byte[] data, int offset) {
+        return ((data[offset] & 0xFFL) << 24) | ((data[offset + 1] & 0xFFL) << 16)
+                | ((data[offset + 2] & 0xFFL) << 8) | (data[offset + 3] & 0xFFL);
+    }
+
+    private static long int24(byte[] data, int offset) {
+        return ((data[offset] & 0xFFL) << 16) | ((data[offset + 1] & 0xFFL) << 8) | (data[offset + 2] & 0xFFL);
+    }
+
+    private record FrameHeader(int versionBits, int layer, int bitrate, int sampleRate, int samplesPerFrame,
+                               int frameLength, int sideInfoLength) {
+
+        static FrameHeader parse(byte[] data, int offset) {
+            int b1 = data[offset + 1] & 0xFF;
+            int b2 = data[offset + 2] & 0xFF;
+            int b3 = data[offset + 3] & 0xFF;
+            if ((data[offset] & 0xFF) != 0xFF || (b1 & 0xE0) != 0xE0) {
+                return null;
+            }
+
+            int versionBits = (b1 >> 3) & 0x3;
+            int layer = 4 - ((b1 >> 1) & 0x3);
+            int bitrateIndex = (b2 >> 4) & 0xF;
+            int sampleRateIndex = (b2 >> 2) & 0x3;
+            // Reserved version, reserved layer, free format or bad bitrate, reserved sample rate
+            if (versionBits == 1 || layer == 4 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+                return null;
+            }
+
+            boolean mpeg1 = versionBits == 3;
+            boolean mono = ((b3 >> 6) & 0x3) == 3;
+            int padding = (b2 >> 1) & 0x1;
+            int bitrate = BITRATES[mpeg1 ? 0 : 1][layer - 1][bitrateIndex];
+            int sampleRate = SAMPLE_RATES[versionBits][sampleRateIndex];
+
+            int samplesPerFrame;
+            int frameLength;
+            if (layer == 1) {
+                samplesPerFrame = 384;
+                frameLength = (12 * bitrate * 1000 / sampleRate + padding) * 4;
+            } else {
+                samplesPerFrame = layer == 3 && !mpeg1 ? 576 : 1152;
+                frameLength = samplesPerFrame / 8 * bitrate * 1000 / sampleRate + padding;
+            }
+
+            int sideInfoLength = mpeg1 ? (mono ? 17 : 32) : (mono ? 9 : 17);
+            return new FrameHeader(versionBits, layer, bitrate, sampleRate, samplesPerFrame, frameLength, sideInfoLength);
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.akmaljon.resourceservice.metadata;
+
+// Raw values read from the tags and the first MPEG frames; fields missing from the tags are null
+public record Mp3Headers(String title, String artist, String album, String year, double durationSeconds) {
+}
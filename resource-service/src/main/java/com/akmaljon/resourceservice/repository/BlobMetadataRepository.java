@@ -0,0 +1,25 @@
+package com.akmaljon.resourceservice.repository;
+
+import com.akmaljon.resourceservice.entity.BlobMetadata;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface BlobMetadataRepository extends JpaRepository<BlobMetadata, String> {
+
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO blob_metadata (checksum, name, artist, album, duration, year) " +
+            "VALUES (:checksum, :name, :artist, :album, :duration, :year) ON CONFLICT (checksum) DO NOTHING",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("checksum") String checksum,
+                       @Param("name") String name,
+                       @Param("artist") String artist,
+                       @Param("album") String album,
+                       @Param("duration") String duration,
+                       @Param("year") String year);
+}
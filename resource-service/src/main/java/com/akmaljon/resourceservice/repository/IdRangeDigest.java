@@ -0,0 +1,5 @@
+package com.akmaljon.resourceservice.repository;
+
+// Row count and XOR of the hashed IDs in a range, computed exactly like song-service's GET /songs/digest
+public record IdRangeDigest(long count, long digest) {
+}
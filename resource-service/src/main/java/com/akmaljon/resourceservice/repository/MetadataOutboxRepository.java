@@ -0,0 +1,43 @@
+package com.akmaljon.resourceservice.repository;
+
+import com.akmaljon.resourceservice.entity.MetadataOutboxEntry;
+import com.akmaljon.resourceservice.entity.OutboxStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface MetadataOutboxRepository extends JpaRepository<MetadataOutboxEntry, Long>, MetadataOutboxRepositoryCustom {
+
+    // Lock timeout -2 renders as SKIP LOCKED, so concurrent pollers never claim the same entries
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    List<MetadataOutboxEntry> findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(
+            OutboxStatus status, Instant now, Limit limit);
+
+    // Entries that are due now: neither backing off after a failed attempt nor claimed by a worker. Stops
+    // counting at the limit, so a large backlog costs no more than a full one
+    @Query(value = "SELECT count(*) FROM (SELECT 1 FROM metadata_outbox " +
+            "WHERE status = 'PENDING' AND next_attempt_at <= now() LIMIT :limit) due",
+            nativeQuery = true)
+    long countDueUpTo(@Param("limit") long limit);
+
+    @Modifying
+    @Query("update MetadataOutboxEntry e set e.status = :status, e.attempts = :attempts, " +
+            "e.nextAttemptAt = :nextAttemptAt, e.lastError = :lastError where e.id = :id")
+    int updateAttempt(@Param("id") Long id,
+                      @Param("status") OutboxStatus status,
+                      @Param("attempts") int attempts,
+                      @Param("nextAttemptAt") Instant nextAttemptAt,
+                      @Param("lastError") String lastError);
+}
@@ -0,0 +1,10 @@
+package com.akmaljon.resourceservice.repository;
+
+import java.util.List;
+
+public interface MetadataOutboxRepositoryCustom {
+
+    // Queues delivery for the resources that still exist and have no entry at all, returns how many were queued.
+    // FAILED entries block requeueing: content that could not be parsed would fail the same way again
+    int enqueueIfNotQueued(List<Long> resourceIds);
+}
@@ -0,0 +1,32 @@
+package com.akmaljon.resourceservice.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+
+public class MetadataOutboxRepositoryImpl implements MetadataOutboxRepositoryCustom {
+
+    // One statement, so a resource deleted or picked up by the outbox meanwhile is neither referenced nor queued twice.
+    // Delivered entries are deleted, so any remaining entry is either still pending or FAILED for good
+    private static final String ENQUEUE_IF_NOT_QUEUED_SQL =
+            "INSERT INTO metadata_outbox (resource_id, status, attempts, next_attempt_at, created_at) " +
+                    "SELECT r.id, 'PENDING', 0, now(), now() FROM resources r " +
+                    "WHERE r.id = ANY (?) AND NOT EXISTS (" +
+                    "SELECT 1 FROM metadata_outbox o WHERE o.resource_id = r.id)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MetadataOutboxRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int enqueueIfNotQueued(List<Long> resourceIds) {
+        return jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(ENQUEUE_IF_NOT_QUEUED_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", resourceIds.toArray()));
+            return statement;
+        });
+    }
+}
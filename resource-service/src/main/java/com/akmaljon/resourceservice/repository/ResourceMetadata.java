@@ -0,0 +1,11 @@
+package com.akmaljon.resourceservice.repository;
+
+import com.akmaljon.resourceservice.entity.StorageTier;
+
+import java.time.Instant;
+
+// Read-only view of a resource row. Read paths use it instead of the entity, so nothing enters
+// the persistence context and nothing is dirty-checked at commit
+public record ResourceMetadata(Long id, String storageKey, long size, String checksum, String contentType,
+                               Instant createdAt, StorageTier tier) {
+}
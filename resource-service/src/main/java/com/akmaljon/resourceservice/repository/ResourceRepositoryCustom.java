@@ -0,0 +1,27 @@
+package com.akmaljon.resourceservice.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ResourceRepositoryCustom {
+
+    // Deletes every matching row and releases its blob reference in one statement, returning the deleted IDs
+    List<Long> deleteAllByIdReturningIds(List<Long> ids);
+
+    // Plain column read for the download and outbox paths, the bytes themselves stay in the BlobStore
+    Optional<ResourceMetadata> findMetadataById(Long id);
+
+    // Keyset page in ID order: rows with afterId < id <= toId
+    List<ResourceMetadata> findMetadataPage(long afterId, long toId, int limit);
+
+    List<ResourceMetadata> findMetadataByIds(List<Long> ids);
+
+    // The n-th ID after afterId in ID order, or null when fewer rows follow
+    Long findNthIdAfter(long afterId, int n);
+
+    IdRangeDigest digestIdRange(long idFrom, long idTo);
+
+    List<Long> findIdsInRange(long idFrom, long idTo);
+
+    List<Long> findExistingIds(List<Long> ids);
+}
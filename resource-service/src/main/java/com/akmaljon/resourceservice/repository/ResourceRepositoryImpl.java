@@ -0,0 +1,109 @@
+package com.akmaljon.resourceservice.repository;
+
+import com.akmaljon.resourceservice.entity.StorageTier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Optional;
+
+public class ResourceRepositoryImpl implements ResourceRepositoryCustom {
+
+    // Blobs whose count drops to zero are left for BlobGarbageCollector, which deletes the bytes under a row lock
+    private static final String DELETE_RETURNING_IDS_SQL =
+            "WITH deleted AS (DELETE FROM resources WHERE id = ANY (?) RETURNING id, checksum), " +
+                    "released AS (UPDATE blobs b SET ref_count = b.ref_count - d.refs, updated_at = now() " +
+                    "FROM (SELECT checksum, count(*) AS refs FROM deleted GROUP BY checksum) d " +
+                    "WHERE b.checksum = d.checksum) " +
+                    "SELECT id FROM deleted";
+
+    private static final String SELECT_METADATA_SQL =
+            "SELECT r.id, r.storage_key, r.size, r.checksum, r.content_type, r.created_at, b.tier " +
+                    "FROM resources r JOIN blobs b ON b.checksum = r.checksum ";
+
+    private static final String FIND_METADATA_SQL = SELECT_METADATA_SQL + "WHERE r.id = ?";
+
+    private static final String FIND_METADATA_PAGE_SQL =
+            SELECT_METADATA_SQL + "WHERE r.id > ? AND r.id <= ? ORDER BY r.id LIMIT ?";
+
+    private static final String FIND_METADATA_BY_IDS_SQL = SELECT_METADATA_SQL + "WHERE r.id = ANY (?) ORDER BY r.id";
+
+    private static final RowMapper<ResourceMetadata> METADATA_ROW_MAPPER = (resultSet, rowNum) -> new ResourceMetadata(
+            resultSet.getLong("id"),
+            resultSet.getString("storage_key"),
+            resultSet.getLong("size"),
+            resultSet.getString("checksum"),
+            resultSet.getString("content_type"),
+            resultSet.getTimestamp("created_at").toInstant(),
+            StorageTier.valueOf(resultSet.getString("tier")));
+
+    private static final String FIND_NTH_ID_AFTER_SQL = "SELECT id FROM resources WHERE id > ? ORDER BY id OFFSET ? LIMIT 1";
+
+    private static final String DIGEST_ID_RANGE_SQL =
+            "SELECT count(*), coalesce(bit_xor(hashtextextended(id::text, 0)), 0) FROM resources WHERE id >= ? AND id <= ?";
+
+    private static final String FIND_IDS_IN_RANGE_SQL = "SELECT id FROM resources WHERE id >= ? AND id <= ? ORDER BY id";
+
+    private static final String FIND_EXISTING_IDS_SQL = "SELECT id FROM resources WHERE id = ANY (?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ResourceRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<Long> deleteAllByIdReturningIds(List<Long> ids) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(DELETE_RETURNING_IDS_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", ids.toArray()));
+            return statement;
+        }, (resultSet, rowNum) -> resultSet.getLong(1));
+    }
+
+    @Override
+    public Optional<ResourceMetadata> findMetadataById(Long id) {
+        return jdbcTemplate.query(FIND_METADATA_SQL, METADATA_ROW_MAPPER, id).stream().findFirst();
+    }
+
+    @Override
+    public List<ResourceMetadata> findMetadataPage(long afterId, long toId, int limit) {
+        return jdbcTemplate.query(FIND_METADATA_PAGE_SQL, METADATA_ROW_MAPPER, afterId, toId, limit);
+    }
+
+    @Override
+    public List<ResourceMetadata> findMetadataByIds(List<Long> ids) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(FIND_METADATA_BY_IDS_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", ids.toArray()));
+            return statement;
+        }, METADATA_ROW_MAPPER);
+    }
+
+    @Override
+    public Long findNthIdAfter(long afterId, int n) {
+        return jdbcTemplate.query(FIND_NTH_ID_AFTER_SQL, (resultSet, rowNum) -> resultSet.getLong(1), afterId, n - 1)
+                .stream().findFirst().orElse(null);
+    }
+
+    @Override
+    public IdRangeDigest digestIdRange(long idFrom, long idTo) {
+        return jdbcTemplate.queryForObject(DIGEST_ID_RANGE_SQL,
+                (resultSet, rowNum) -> new IdRangeDigest(resultSet.getLong(1), resultSet.getLong(2)), idFrom, idTo);
+    }
+
+    @Override
+    public List<Long> findIdsInRange(long idFrom, long idTo) {
+        return jdbcTemplate.query(FIND_IDS_IN_RANGE_SQL, (resultSet, rowNum) -> resultSet.getLong(1), idFrom, idTo);
+    }
+
+    @Override
+    public List<Long> findExistingIds(List<Long> ids) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(FIND_EXISTING_IDS_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", ids.toArray()));
+            return statement;
+        }, (resultSet, rowNum) -> resultSet.getLong(1));
+    }
+}
@@ -0,0 +1,22 @@
+package com.akmaljon.resourceservice.repository;
+
+import com.akmaljon.resourceservice.entity.StoredBlob;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String>, StoredBlobRepositoryCustom {
+
+    // Lock timeout -2 renders as SKIP LOCKED, blobs being re-referenced by an upload are left alone
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    List<StoredBlob> findByRefCountAndUpdatedAtBeforeOrderByUpdatedAt(int refCount, Instant updatedBefore, Limit limit);
+}
@@ -0,0 +1,49 @@
+package com.akmaljon.resourceservice.repository;
+
+import com.akmaljon.resourceservice.entity.StorageTier;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+public interface StoredBlobRepositoryCustom {
+
+    // Creates the blob row or bumps its reference count. storedHot tells whether the caller has just written the
+    // bytes to the primary store; returns true when that brought a cold blob back to HOT and its cold copy is stale
+    boolean acquireReference(String checksum, String storageKey, long size, boolean storedHot);
+
+    // Restarts the garbage collection grace period of the blob and returns its reference count, empty if
+    // there is no row. Runs outside the upload transaction, before the upload decides whether to write the bytes
+    Optional<Integer> touch(String checksum);
+
+    // Records bytes nothing references yet, so the garbage collector removes them after the grace period
+    void insertUnreferenced(String checksum, String storageKey, long size);
+
+    // Adds the counted reads to each blob and marks it as accessed now, in one batch
+    void recordAccesses(Map<String, Long> accessCounts);
+
+    // Marks the least recently read referenced hot blob not read since the given instant as DEMOTING and returns it.
+    // One auto-committed statement: the row is not locked while its bytes are copied
+    Optional<TieredBlob> claimDemotionCandidate(Instant accessedBefore);
+
+    // Returns blobs claimed for demotion before the cutoff, by an instance that never finished, to the hot tier
+    int resetDemotionsClaimedBefore(Instant cutoff);
+
+    // Marks the blob PROMOTING if it is COLD and returns it, empty when another reader claimed or moved it first.
+    // One auto-committed statement, like the demotion claim
+    Optional<TieredBlob> claimPromotion(String checksum);
+
+    // Hands the claim back after a failed copy, the blob stays COLD
+    void releasePromotion(String checksum);
+
+    // Returns blobs claimed for promotion before the cutoff, by an instance that never finished, to the cold tier
+    int resetPromotionsClaimedBefore(Instant cutoff);
+
+    Optional<StorageTier> findTier(String checksum);
+
+    // Locks the blob row until the end of the transaction
+    Optional<TieredBlob> lockByChecksum(String checksum);
+
+    // Compare-and-set on the tier, for moves that do not hold the row lock while copying
+    int updateTier(String checksum, StorageTier from, StorageTier to, Long storedSize);
+}
@@ -0,0 +1,144 @@
+package com.akmaljon.resourceservice.repository;
+
+import com.akmaljon.resourceservice.entity.StorageTier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public class StoredBlobRepositoryImpl implements StoredBlobRepositoryCustom {
+
+    // A blob revived from zero references whose bytes the upload just wrote to the primary store is hot.
+    // RETURNING only sees the new row, the locking read in the CTE supplies the tier it had before. A promotion
+    // in progress loses its claim that way and leaves the fresh hot copy alone
+    private static final String ACQUIRE_REFERENCE_SQL =
+            "WITH previous AS (SELECT tier FROM blobs WHERE checksum = ? FOR UPDATE) " +
+                    "INSERT INTO blobs (checksum, storage_key, size, ref_count, updated_at) VALUES (?, ?, ?, 1, now()) " +
+                    "ON CONFLICT (checksum) DO UPDATE SET ref_count = blobs.ref_count + 1, updated_at = now(), " +
+                    "last_accessed_at = now(), " +
+                    "tier = CASE WHEN blobs.ref_count = 0 AND ? THEN 'HOT' ELSE blobs.tier END " +
+                    "RETURNING coalesce((SELECT tier FROM previous) IN ('COLD', 'PROMOTING') AND tier = 'HOT', false)";
+
+    private static final String TOUCH_SQL = "UPDATE blobs SET updated_at = now() WHERE checksum = ? RETURNING ref_count";
+
+    private static final String INSERT_UNREFERENCED_SQL =
+            "INSERT INTO blobs (checksum, storage_key, size, ref_count, updated_at) VALUES (?, ?, ?, 0, now()) " +
+                    "ON CONFLICT (checksum) DO NOTHING";
+
+    private static final String RECORD_ACCESS_SQL =
+            "UPDATE blobs SET access_count = access_count + ?, last_accessed_at = now() WHERE checksum = ?";
+
+    // updated_at records the claim, so a demotion abandoned by a stopped instance can be told apart
+    private static final String CLAIM_DEMOTION_CANDIDATE_SQL =
+            "UPDATE blobs SET tier = 'DEMOTING', updated_at = now() WHERE checksum = (" +
+                    "SELECT checksum FROM blobs WHERE tier = 'HOT' AND ref_count > 0 AND last_accessed_at < ? " +
+                    "ORDER BY last_accessed_at LIMIT 1 FOR UPDATE SKIP LOCKED) " +
+                    "RETURNING checksum, storage_key, size, tier";
+
+    private static final String RESET_DEMOTIONS_SQL =
+            "UPDATE blobs SET tier = 'HOT' WHERE tier = 'DEMOTING' AND updated_at < ?";
+
+    // updated_at records the claim here as well, for promotions abandoned by a stopped instance
+    private static final String CLAIM_PROMOTION_SQL =
+            "UPDATE blobs SET tier = 'PROMOTING', updated_at = now() WHERE checksum = ? AND tier = 'COLD' " +
+                    "RETURNING checksum, storage_key, size, tier";
+
+    // Keeps stored_size, the cold copy stays in use
+    private static final String RELEASE_PROMOTION_SQL =
+            "UPDATE blobs SET tier = 'COLD' WHERE checksum = ? AND tier = 'PROMOTING'";
+
+    private static final String RESET_PROMOTIONS_SQL =
+            "UPDATE blobs SET tier = 'COLD' WHERE tier = 'PROMOTING' AND updated_at < ?";
+
+    private static final String FIND_TIER_SQL = "SELECT tier FROM blobs WHERE checksum = ?";
+
+    private static final String LOCK_BY_CHECKSUM_SQL =
+            "SELECT checksum, storage_key, size, tier FROM blobs WHERE checksum = ? FOR UPDATE";
+
+    private static final String COMPARE_AND_SET_TIER_SQL =
+            "UPDATE blobs SET tier = ?, stored_size = ? WHERE checksum = ? AND tier = ?";
+
+    private static final RowMapper<TieredBlob> TIERED_BLOB_ROW_MAPPER = (resultSet, rowNum) -> new TieredBlob(
+            resultSet.getString("checksum"),
+            resultSet.getString("storage_key"),
+            resultSet.getLong("size"),
+            StorageTier.valueOf(resultSet.getString("tier")));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public StoredBlobRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public boolean acquireReference(String checksum, String storageKey, long size, boolean storedHot) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(ACQUIRE_REFERENCE_SQL, Boolean.class,
+                checksum, checksum, storageKey, size, storedHot));
+    }
+
+    @Override
+    public Optional<Integer> touch(String checksum) {
+        return jdbcTemplate.query(TOUCH_SQL, (resultSet, rowNum) -> resultSet.getInt(1), checksum).stream().findFirst();
+    }
+
+    @Override
+    public void insertUnreferenced(String checksum, String storageKey, long size) {
+        jdbcTemplate.update(INSERT_UNREFERENCED_SQL, checksum, storageKey, size);
+    }
+
+    @Override
+    public void recordAccesses(Map<String, Long> accessCounts) {
+        List<Object[]> batchArgs = new ArrayList<>(accessCounts.size());
+        accessCounts.forEach((checksum, count) -> batchArgs.add(new Object[]{count, checksum}));
+        jdbcTemplate.batchUpdate(RECORD_ACCESS_SQL, batchArgs);
+    }
+
+    @Override
+    public Optional<TieredBlob> claimDemotionCandidate(Instant accessedBefore) {
+        return jdbcTemplate.query(CLAIM_DEMOTION_CANDIDATE_SQL, TIERED_BLOB_ROW_MAPPER, Timestamp.from(accessedBefore))
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    public int resetDemotionsClaimedBefore(Instant cutoff) {
+        return jdbcTemplate.update(RESET_DEMOTIONS_SQL, Timestamp.from(cutoff));
+    }
+
+    @Override
+    public Optional<TieredBlob> lockByChecksum(String checksum) {
+        return jdbcTemplate.query(LOCK_BY_CHECKSUM_SQL, TIERED_BLOB_ROW_MAPPER, checksum).stream().findFirst();
+    }
+
+    @Override
+    public Optional<TieredBlob> claimPromotion(String checksum) {
+        return jdbcTemplate.query(CLAIM_PROMOTION_SQL, TIERED_BLOB_ROW_MAPPER, checksum).stream().findFirst();
+    }
+
+    @Override
+    public void releasePromotion(String checksum) {
+        jdbcTemplate.update(RELEASE_PROMOTION_SQL, checksum);
+    }
+
+    @Override
+    public int resetPromotionsClaimedBefore(Instant cutoff) {
+        return jdbcTemplate.update(RESET_PROMOTIONS_SQL, Timestamp.from(cutoff));
+    }
+
+    @Override
+    public Optional<StorageTier> findTier(String checksum) {
+        return jdbcTemplate.query(FIND_TIER_SQL, (resultSet, rowNum) -> StorageTier.valueOf(resultSet.getString(1)), checksum)
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    public int updateTier(String checksum, StorageTier from, StorageTier to, Long storedSize) {
+        return jdbcTemplate.update(COMPARE_AND_SET_TIER_SQL, to.name(), storedSize, checksum, from.name());
+    }
+}
@@ -0,0 +1,6 @@
+package com.akmaljon.resourceservice.repository;
+
+import com.akmaljon.resourceservice.entity.StorageTier;
+
+public record TieredBlob(String checksum, String storageKey, long size, StorageTier tier) {
+}
@@ -0,0 +1,32 @@
+package com.akmaljon.resourceservice.repository;
+
+import com.akmaljon.resourceservice.entity.UploadChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadChunkRepository extends JpaRepository<UploadChunk, Long> {
+
+    List<UploadChunk> findByUploadIdOrderByChunkIndex(String uploadId);
+
+    @Query("select c.checksum from UploadChunk c where c.uploadId = :uploadId and c.chunkIndex = :chunkIndex")
+    Optional<String> findChecksum(@Param("uploadId") String uploadId, @Param("chunkIndex") int chunkIndex);
+
+    // Called with the session locked by UploadSessionRepository.lockOpen; a re-sent chunk replaces the previous one
+    @Modifying
+    @Query(value = "INSERT INTO upload_chunks (upload_id, chunk_index, size, checksum, created_at) " +
+            "VALUES (:uploadId, :chunkIndex, :size, :checksum, now()) " +
+            "ON CONFLICT (upload_id, chunk_index) DO UPDATE " +
+            "SET size = EXCLUDED.size, checksum = EXCLUDED.checksum, created_at = EXCLUDED.created_at",
+            nativeQuery = true)
+    int upsert(@Param("uploadId") String uploadId,
+               @Param("chunkIndex") int chunkIndex,
+               @Param("size") long size,
+               @Param("checksum") String checksum);
+}
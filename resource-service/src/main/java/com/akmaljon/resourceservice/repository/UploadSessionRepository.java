@@ -0,0 +1,40 @@
+package com.akmaljon.resourceservice.repository;
+
+import com.akmaljon.resourceservice.entity.UploadSession;
+import com.akmaljon.resourceservice.entity.UploadStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    // Locks the session until commit if it is open and unexpired. Chunk rows are recorded under this lock, so
+    // completion and abort, which move the session out of OPEN, wait for a chunk being recorded and see it
+    @Query(value = "SELECT id FROM upload_sessions WHERE id = :id AND status = 'OPEN' AND expires_at > now() " +
+            "FOR NO KEY UPDATE", nativeQuery = true)
+    Optional<String> lockOpen(@Param("id") String id);
+
+    // Open sessions past their expiry, and sessions stuck in COMPLETING well past it, e.g. after a crash
+    @Query("select s from UploadSession s " +
+            "where (s.status = com.akmaljon.resourceservice.entity.UploadStatus.OPEN and s.expiresAt < :now) " +
+            "or (s.status = com.akmaljon.resourceservice.entity.UploadStatus.COMPLETING and s.expiresAt < :completingCutoff) " +
+            "order by s.expiresAt")
+    List<UploadSession> findExpired(@Param("now") Instant now,
+                                    @Param("completingCutoff") Instant completingCutoff,
+                                    Limit limit);
+
+    // Compare-and-set on the status, only one caller can move a session out of a given state
+    @Transactional
+    @Modifying
+    @Query("update UploadSession s set s.status = :to where s.id = :id and s.status = :from")
+    int updateStatus(@Param("id") String id, @Param("from") UploadStatus from, @Param("to") UploadStatus to);
+}
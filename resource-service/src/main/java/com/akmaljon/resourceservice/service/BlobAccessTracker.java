@@ -0,0 +1,60 @@
+package com.akmaljon.resourceservice.service;
+
+import com.akmaljon.resourceservice.repository.StoredBlobRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counts reads per blob in memory and writes them out periodically, so downloads never wait on an UPDATE.
+// Counts are only used to judge recency for tiering; a few lost on a crash do not matter
+@Component
+public class BlobAccessTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobAccessTracker.class);
+
+    private final StoredBlobRepository storedBlobRepository;
+    private final Map<String, LongAdder> pendingAccesses = new ConcurrentHashMap<>();
+
+    public BlobAccessTracker(StoredBlobRepository storedBlobRepository) {
+        this.storedBlobRepository = storedBlobRepository;
+    }
+
+    public void recordAccess(String checksum) {
+        pendingAccesses.computeIfAbsent(checksum, key -> new LongAdder()).increment();
+    }
+
+    @Scheduled(fixedDelayString = "${resource.storage.tiering.access-flush-interval}")
+    public void flush() {
+        Map<String, Long> accessCounts = new HashMap<>();
+        for (String checksum : pendingAccesses.keySet()) {
+            LongAdder counter = pendingAccesses.remove(checksum);
+            if (counter != null) {
+                accessCounts.put(checksum, counter.sum());
+            }
+        }
+        if (accessCounts.isEmpty()) {
+            return;
+        }
+
+        try {
+            storedBlobRepository.recordAccesses(accessCounts);
+        } catch (Exception e) {
+            // Put the counts back, the next flush tries again
+            accessCounts.forEach((checksum, count) ->
+                    pendingAccesses.computeIfAbsent(checksum, key -> new LongAdder()).add(count));
+            logger.warn("Failed to record accesses of {} blobs: {}", accessCounts.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,74 @@
+package com.akmaljon.resourceservice.service;
+
+import com.akmaljon.resourceservice.entity.StoredBlob;
+import com.akmaljon.resourceservice.repository.StoredBlobRepository;
+import com.akmaljon.resourceservice.storage.BlobStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+@Component
+public class BlobGarbageCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobGarbageCollector.class);
+
+    private final StoredBlobRepository storedBlobRepository;
+    private final BlobStore blobStore;
+    private final BlobStore coldBlobStore;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration gracePeriod;
+    private final int batchSize;
+
+    public BlobGarbageCollector(StoredBlobRepository storedBlobRepository,
+                                BlobStore blobStore,
+                                @Qualifier("coldBlobStore") BlobStore coldBlobStore,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${resource.storage.gc.grace-period}") Duration gracePeriod,
+                                @Value("${resource.storage.gc.batch-size}") int batchSize) {
+        this.storedBlobRepository = storedBlobRepository;
+        this.blobStore = blobStore;
+        this.coldBlobStore = coldBlobStore;
+        this.transactionTemplate = transactionTemplate;
+        this.gracePeriod = gracePeriod;
+        this.batchSize = batchSize;
+    }
+
+    // The bytes are deleted while the blob row is still locked, so an upload of the same content
+    // waits and then stores a fresh copy instead of referencing one that is about to disappear.
+    // Uploads write their bytes before they reference the blob and touch its row first; the grace period
+    // keeps those bytes from being collected in between
+    @Scheduled(fixedDelayString = "${resource.storage.gc.poll-interval}")
+    public void collectUnreferencedBlobs() {
+        Instant updatedBefore = Instant.now().minus(gracePeriod);
+        Integer collected = transactionTemplate.execute(status -> {
+            List<StoredBlob> blobs = storedBlobRepository.findByRefCountAndUpdatedAtBeforeOrderByUpdatedAt(
+                    0, updatedBefore, Limit.of(batchSize));
+            int count = 0;
+            for (StoredBlob blob : blobs) {
+                try {
+                    // Both tiers: a copy left behind by an interrupted tier move goes with the blob
+                    blobStore.delete(blob.getStorageKey());
+                    coldBlobStore.delete(blob.getStorageKey());
+                    storedBlobRepository.delete(blob);
+                    count++;
+                } catch (Exception e) {
+                    logger.warn("Failed to collect blob {}: {}", blob.getChecksum(), e.getMessage());
+                }
+            }
+            return count;
+        });
+
+        if (collected != null && collected > 0) {
+            logger.info("Collected {} unreferenced blobs", collected);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.akmaljon.resourceservice.service;
+
+import com.akmaljon.resourceservice.entity.StorageTier;
+import com.akmaljon.resourceservice.exception.BlobStorageException;
+import com.akmaljon.resourceservice.repository.StoredBlobRepository;
+import com.akmaljon.resourceservice.repository.TieredBlob;
+import com.akmaljon.resourceservice.storage.BlobStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Moves blobs nobody has read for a while from the primary store to a cheaper cold store, gzip-compressed,
+// and brings them back on the next read. A demotion claims one blob at a time as DEMOTING, copies it without
+// holding any lock and then switches it to COLD only if nothing changed it meanwhile; the hot copy is removed
+// after a grace period that outlasts cached reads of the old tier. A promotion works the same way the other
+// direction: the first reader claims the blob as PROMOTING and copies it back without a lock or a connection;
+// readers that lose the claim are served from the cold copy meanwhile
+@Service
+public class BlobTieringService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobTieringService.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final StoredBlobRepository storedBlobRepository;
+    private final BlobStore hotStore;
+    private final BlobStore coldStore;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler taskScheduler;
+    private final Path spoolDirectory;
+    private final boolean demotionEnabled;
+    private final Duration coldAfter;
+    private final int batchSize;
+    private final Duration demotionTimeout;
+    private final Duration promotionTimeout;
+    private final Duration hotCopyGracePeriod;
+    private final Counter demotions;
+    private final Counter promotions;
+
+    public BlobTieringService(StoredBlobRepository storedBlobRepository,
+                              BlobStore hotStore,
+                              @Qualifier("coldBlobStore") BlobStore coldStore,
+                              TransactionTemplate transactionTemplate,
+                              TaskScheduler taskScheduler,
+                              MeterRegistry meterRegistry,
+                              @Value("${resource.upload.spool-dir}") Path spoolDirectory,
+                              @Value("${resource.storage.tiering.enabled}") boolean demotionEnabled,
+                              @Value("${resource.storage.tiering.cold-after}") Duration coldAfter,
+                              @Value("${resource.storage.tiering.batch-size}") int batchSize,
+                              @Value("${resource.storage.tiering.demotion-timeout}") Duration demotionTimeout,
+                              @Value("${resource.storage.tiering.promotion-timeout}") Duration promotionTimeout,
+                              @Value("${resource.storage.tiering.hot-copy-grace-period}") Duration hotCopyGracePeriod) {
+        this.storedBlobRepository = storedBlobRepository;
+        this.hotStore = hotStore;
+        this.coldStore = coldStore;
+        this.transactionTemplate = transactionTemplate;
+        this.taskScheduler = taskScheduler;
+        this.spoolDirectory = spoolDirectory;
+        this.demotionEnabled = demotionEnabled;
+        this.coldAfter = coldAfter;
+        this.batchSize = batchSize;
+        this.demotionTimeout = demotionTimeout;
+        this.promotionTimeout = promotionTimeout;
+        this.hotCopyGracePeriod = hotCopyGracePeriod;
+        this.demotions = Counter.builder("resource.storage.tier.moves")
+                .description("Blobs moved between storage tiers")
+                .tag("direction", "demote")
+                .register(meterRegistry);
+        this.promotions = Counter.builder("resource.storage.tier.moves")
+                .description("Blobs moved between storage tiers")
+                .tag("direction", "promote")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${resource.storage.tiering.poll-interval}")
+    public void demoteColdBlobs() {
+        // Blobs demoted earlier are still promoted on reads when demotion is switched off
+        int abandonedPromotions = storedBlobRepository.resetPromotionsClaimedBefore(Instant.now().minus(promotionTimeout));
+        if (abandonedPromotions > 0) {
+            logger.warn("Returned {} abandoned promotions to the cold tier", abandonedPromotions);
+        }
+
+        if (!demotionEnabled) {
+            return;
+        }
+
+        int reset = storedBlobRepository.resetDemotionsClaimedBefore(Instant.now().minus(demotionTimeout));
+        if (reset > 0) {
+            logger.warn("Returned {} abandoned demotions to the hot tier", reset);
+        }
+
+        Instant accessedBefore = Instant.now().minus(coldAfter);
+        int demoted = 0;
+        for (int i = 0; i < batchSize; i++) {
+            Optional<TieredBlob> claimed = storedBlobRepository.claimDemotionCandidate(accessedBefore);
+            if (claimed.isEmpty()) {
+                break;
+            }
+            if (demote(claimed.get())) {
+                demoted++;
+            }
+        }
+
+        if (demoted > 0) {
+            demotions.increment(demoted);
+            logger.info("Moved {} blobs to the cold tier", demoted);
+        }
+    }
+
+    // Uploads and deletes of the blob go ahead during the copy. If one of them revived it as HOT or the garbage
+    // collector removed it, the compare-and-set fails and the cold copy is dropped again
+    private boolean demote(TieredBlob blob) {
+        long storedSize;
+        try {
+            storedSize = copy(blob.storageKey(), hotStore, coldStore, true);
+        } catch (Exception e) {
+            logger.warn("Failed to demote blob {}: {}", blob.checksum(), e.getMessage());
+            storedBlobRepository.updateTier(blob.checksum(), StorageTier.DEMOTING, StorageTier.HOT, null);
+            return false;
+        }
+
+        if (storedBlobRepository.updateTier(blob.checksum(), StorageTier.DEMOTING, StorageTier.COLD, storedSize) == 0) {
+            logger.debug("Blob {} changed while it was demoted, keeping it hot", blob.checksum());
+            deleteQuietly(coldStore, blob.storageKey());
+            return false;
+        }
+
+        taskScheduler.schedule(() -> deleteHotCopy(blob), Instant.now().plus(hotCopyGracePeriod));
+        return true;
+    }
+
+    // Downloads that read the tier before the demotion, or took it from the resource cache, still open the hot
+    // copy until the grace period is over. The row lock keeps a promotion from claiming the blob while the copy
+    // is deleted, and a blob claimed or promoted in the meantime keeps its copy. A hot copy whose deletion is lost with the instance
+    // stays until the blob is collected
+    private void deleteHotCopy(TieredBlob blob) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> storedBlobRepository.lockByChecksum(blob.checksum())
+                    .filter(current -> current.tier() == StorageTier.COLD)
+                    .ifPresent(current -> hotStore.delete(current.storageKey())));
+        } catch (Exception e) {
+            logger.warn("Failed to delete hot copy of demoted blob {}: {}", blob.checksum(), e.getMessage());
+        }
+    }
+
+    // The cold copy of a blob an upload brought back to the hot tier without promoting it
+    public void deleteColdCopy(String storageKey) {
+        deleteQuietly(coldStore, storageKey);
+    }
+
+    // Decompresses the blob back into the primary store. Returns whether it is hot now; false when another
+    // reader is promoting it or the copy failed, the caller then reads the cold copy. An upload that revives the
+    // blob as HOT during the copy, or the garbage collector removing it, makes the final compare-and-set fail
+    public boolean promote(String checksum) {
+        Optional<TieredBlob> claimed = storedBlobRepository.claimPromotion(checksum);
+        if (claimed.isEmpty()) {
+            return storedBlobRepository.findTier(checksum)
+                    .map(tier -> !tier.isReadFromColdStore())
+                    .orElse(true);
+        }
+
+        TieredBlob blob = claimed.get();
+        try {
+            copy(blob.storageKey(), coldStore, hotStore, false);
+        } catch (Exception e) {
+            logger.warn("Failed to promote blob {}: {}", checksum, e.getMessage());
+            storedBlobRepository.releasePromotion(checksum);
+            return false;
+        }
+
+        if (storedBlobRepository.updateTier(checksum, StorageTier.PROMOTING, StorageTier.HOT, null) == 0) {
+            Optional<StorageTier> tier = storedBlobRepository.findTier(checksum);
+            if (tier.isEmpty()) {
+                // Collected during the copy, the hot copy written since has nothing referencing it
+                deleteQuietly(hotStore, blob.storageKey());
+            }
+            logger.debug("Blob {} changed while it was promoted", checksum);
+            return tier.map(current -> !current.isReadFromColdStore()).orElse(true);
+        }
+
+        deleteQuietly(coldStore, blob.storageKey());
+        promotions.increment();
+        logger.debug("Moved blob {} back to the hot tier", checksum);
+        return true;
+    }
+
+    // Reads a blob where it currently lives without moving it, for bulk reads that should not warm up
+    // the whole catalogue. A tier move committed in between is caught by trying the other tier once
+    public InputStream openInPlace(String storageKey, StorageTier tier) {
+        try {
+            return openIn(storageKey, tier);
+        } catch (BlobStorageException e) {
+            return openIn(storageKey, tier.isReadFromColdStore() ? StorageTier.HOT : StorageTier.COLD);
+        }
+    }
+
+    private InputStream openIn(String storageKey, StorageTier tier) {
+        if (!tier.isReadFromColdStore()) {
+            return hotStore.open(storageKey);
+        }
+        InputStream in = coldStore.open(storageKey);
+        try {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        } catch (IOException e) {
+            try {
+                in.close();
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw new BlobStorageException("Failed to open cold blob " + storageKey, e);
+        }
+    }
+
+    // Streams the blob through a spool file, compressing or decompressing on the way. Returns the stored size
+    private long copy(String key, BlobStore source, BlobStore target, boolean compress) {
+        Path spoolFile = createSpoolFile();
+        try {
+            try (InputStream in = compress ? source.open(key) : new GZIPInputStream(source.open(key), BUFFER_SIZE);
+                 OutputStream file = new BufferedOutputStream(Files.newOutputStream(spoolFile), BUFFER_SIZE);
+                 OutputStream out = compress ? new GZIPOutputStream(file, BUFFER_SIZE) : file) {
+                in.transferTo(out);
+            }
+            long storedSize = Files.size(spoolFile);
+            target.put(key, spoolFile);
+            return storedSize;
+        } catch (IOException e) {
+            throw new BlobStorageException("Failed to move blob " + key + " between tiers", e);
+        } finally {
+            try {
+                Files.deleteIfExists(spoolFile);
+            } catch (IOException e) {
+                logger.warn("Failed to delete spool file {}: {}", spoolFile, e.getMessage());
+            }
+        }
+    }
+
+    private Path createSpoolFile() {
+        try {
+            return Files.createTempFile(spoolDirectory, "tier-", ".part");
+        } catch (IOException e) {
+            throw new BlobStorageException("Failed to create spool file for tier move", e);
+        }
+    }
+
+    private void deleteQuietly(BlobStore store, String key) {
+        try {
+            store.delete(key);
+        } catch (Exception e) {
+            logger.warn("Failed to delete blob {} from its previous tier: {}", key, e.getMessage());
+        }
+    }
+}
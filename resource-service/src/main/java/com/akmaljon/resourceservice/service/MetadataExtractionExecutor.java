@@ -0,0 +1,125 @@
+package com.akmaljon.resourceservice.service;
+
+import com.akmaljon.resourceservice.exception.ExtractionRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs the CPU-bound part of metadata extraction on a fixed pool of platform threads sized to the cores,
+// apart from the virtual threads that handle requests and I/O. The queue is bounded and ordered by file size,
+// so a small file waiting behind a few huge ones is parsed as soon as a thread frees up
+@Component
+public class MetadataExtractionExecutor {
+
+    private static final String EXECUTOR_NAME = "metadata-extraction";
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore capacity;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Timer queueWait;
+    private final Counter rejected;
+
+    public MetadataExtractionExecutor(MeterRegistry meterRegistry,
+                                      @Value("${resource.metadata.extraction.threads:0}") int threads,
+                                      @Value("${resource.metadata.extraction.queue-capacity}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        // Permits cover running and queued tasks, the priority queue itself is unbounded
+        this.capacity = new Semaphore(poolSize + queueCapacity);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), new CustomizableThreadFactory(EXECUTOR_NAME + "-"));
+        // With every thread started up front each task goes through the queue and is ordered there
+        this.executor.prestartAllCoreThreads();
+
+        // executor.active, executor.queued, executor.completed and executor.pool.* under name=metadata-extraction
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, EXECUTOR_NAME);
+        this.queueWait = Timer.builder("resource.metadata.extraction.queue.wait")
+                .description("Time extraction tasks wait for a thread")
+                .tag("name", EXECUTOR_NAME)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejected = Counter.builder("resource.metadata.extraction.rejected")
+                .description("Extraction tasks rejected because the queue was full")
+                .tag("name", EXECUTOR_NAME)
+                .register(meterRegistry);
+    }
+
+    // Blocks the calling thread until the task has run; rejects at once instead of queueing past the capacity
+    public <T> T execute(long size, Callable<T> task) throws Exception {
+        if (!capacity.tryAcquire()) {
+            rejected.increment();
+            throw new ExtractionRejectedException();
+        }
+
+        PrioritizedTask<T> prioritizedTask = new PrioritizedTask<>(task, size, sequence.getAndIncrement());
+        try {
+            executor.execute(prioritizedTask);
+        } catch (RuntimeException e) {
+            capacity.release();
+            throw e;
+        }
+
+        try {
+            return prioritizedTask.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            // The task cannot be recalled from a worker thread, but a queued one is skipped
+            prioritizedTask.cancel(false);
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // Smaller files first, equal sizes in submission order. A big file waits at most for the tasks already
+    // queued, because the outbox only hands over its next batch once the current one has finished
+    private final class PrioritizedTask<T> extends FutureTask<T> implements Comparable<PrioritizedTask<?>> {
+
+        private final long size;
+        private final long sequenceNumber;
+        private final long enqueuedAt = System.nanoTime();
+
+        private PrioritizedTask(Callable<T> task, long size, long sequenceNumber) {
+            super(task);
+            this.size = size;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        @Override
+        public void run() {
+            queueWait.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+            try {
+                super.run();
+            } finally {
+                capacity.release();
+            }
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask<?> other) {
+            int bySize = Long.compare(size, other.size);
+            return bySize != 0 ? bySize : Long.compare(sequenceNumber, other.sequenceNumber);
+        }
+    }
+}
@@ -2,27 +2,85 @@ package com.akmaljon.resourceservice.service;
 
 import com.akmaljon.resourceservice.dto.SongMetadataDto;
 import com.akmaljon.resourceservice.exception.InvalidAudioDataException;
+import com.akmaljon.resourceservice.metadata.ByteRangeSource;
+import com.akmaljon.resourceservice.metadata.Mp3HeaderParser;
+import com.akmaljon.resourceservice.metadata.Mp3Headers;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.apache.tika.exception.TikaException;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.mp3.Mp3Parser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 @Service
 public class MetadataExtractionService {
 
+    private static final Logger logger = LoggerFactory.getLogger(MetadataExtractionService.class);
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final String EXTRACTION_TIMER = "resource.metadata.extraction";
+    private static final long MB = 1024 * 1024;
+
+    private final Mp3HeaderParser headerParser = new Mp3HeaderParser();
+    private final MeterRegistry meterRegistry;
+
+    public MetadataExtractionService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Tries the header-only fast path first, its cost does not grow with the file size.
+    // Falls back to a full Tika parse over the whole content when the fast path cannot decide
+    public SongMetadataDto extractMetadata(Long resourceId, long size, ByteRangeSource source) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String path = "header";
+        String outcome = "success";
+        try {
+            Mp3Headers headers = parseHeaders(resourceId, size, source);
+            if (headers != null) {
+                return toSongMetadata(resourceId, headers.title(), headers.artist(), headers.album(),
+                        normalizeYear(headers.year()), convertDurationToMinutesSeconds(headers.durationSeconds()));
+            }
+
+            path = "full";
+            try (InputStream in = new BufferedInputStream(source.open(0, size), READ_BUFFER_SIZE)) {
+                return extractMetadata(resourceId, in);
+            } catch (IOException e) {
+                throw new InvalidAudioDataException("Failed to read MP3 file", e);
+            }
+        } catch (RuntimeException e) {
+            outcome = "failure";
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(EXTRACTION_TIMER)
+                    .description("Metadata extraction time by file size bucket and parse path")
+                    .tag("size", sizeBucket(size))
+                    .tag("path", path)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
     public SongMetadataDto extractMetadata(Long resourceId, byte[] audioData) {
+        return extractMetadata(resourceId, new ByteArrayInputStream(audioData));
+    }
+
+    // Parses the stream as it is read; the caller owns the stream and is responsible for closing it
+    public SongMetadataDto extractMetadata(Long resourceId, InputStream audioStream) {
         Metadata metadata = new Metadata();
         Mp3Parser parser = new Mp3Parser();
         ParseContext parseContext = new ParseContext();
 
-        try (ByteArrayInputStream inputStream = new ByteArrayInputStream(audioData)) {
-            parser.parse(inputStream, new DefaultHandler(), metadata, parseContext);
+        try {
+            parser.parse(audioStream, new DefaultHandler(), metadata, parseContext);
 
             // Extract metadata values without modification (as per requirements)
             String name = getMetadataValue(metadata, "dc:title", "title");
@@ -34,21 +92,53 @@ public class MetadataExtractionService {
             // Only convert duration format from seconds to mm:ss (allowed modification)
             String duration = convertDurationToMinutesSeconds(durationSeconds);
 
-            // Use extracted values as-is, provide defaults only if extraction fails
-            return new SongMetadataDto(
-                    resourceId,
-                    name != null && !name.isEmpty() ? name : "Unknown",
-                    artist != null && !artist.isEmpty() ? artist : "Unknown",
-                    album != null && !album.isEmpty() ? album : "Unknown",
-                    duration,
-                    year != null && !year.isEmpty() ? year : "1900"
-            );
+            return toSongMetadata(resourceId, name, artist, album, year, duration);
 
         } catch (IOException | SAXException | TikaException e) {
             throw new InvalidAudioDataException("Failed to parse MP3 file", e);
         }
     }
 
+    private Mp3Headers parseHeaders(Long resourceId, long size, ByteRangeSource source) {
+        try {
+            Mp3Headers headers = headerParser.parse(size, source);
+            if (headers == null) {
+                logger.debug("Header fast path undecided for resource {}, falling back to full parse", resourceId);
+            }
+            return headers;
+        } catch (IOException e) {
+            logger.debug("Header fast path failed for resource {}: {}", resourceId, e.getMessage());
+            return null;
+        }
+    }
+
+    // Coarse buckets keep the tag cardinality fixed
+    private static String sizeBucket(long size) {
+        if (size < MB) {
+            return "0-1MB";
+        }
+        if (size < 10 * MB) {
+            return "1-10MB";
+        }
+        if (size < 50 * MB) {
+            return "10-50MB";
+        }
+        return "50MB+";
+    }
+
+    private SongMetadataDto toSongMetadata(Long resourceId, String name, String artist, String album,
+                                           String year, String duration) {
+        // Use extracted values as-is, provide defaults only if extraction fails
+        return new SongMetadataDto(
+                resourceId,
+                name != null && !name.isEmpty() ? name : "Unknown",
+                artist != null && !artist.isEmpty() ? artist : "Unknown",
+                album != null && !album.isEmpty() ? album : "Unknown",
+                duration,
+                year != null && !year.isEmpty() ? year : "1900"
+        );
+    }
+
     private String getMetadataValue(Metadata metadata, String... keys) {
         for (String key : keys) {
             String value = metadata.get(key);
@@ -61,8 +151,10 @@ public class MetadataExtractionService {
 
     private String extractYear(Metadata metadata) {
         // Try multiple year-related fields
-        String year = getMetadataValue(metadata, "xmpDM:releaseDate", "xmpDM:year", "year");
+        return normalizeYear(getMetadataValue(metadata, "xmpDM:releaseDate", "xmpDM:year", "year"));
+    }
 
+    private String normalizeYear(String year) {
         if (year != null && !year.isBlank()) {
             // Extract just the year if it's a full date format
             if (year.length() >= 4) {
@@ -86,16 +178,20 @@ public class MetadataExtractionService {
         }
 
         try {
-            double seconds = Double.parseDouble(durationSeconds);
-            int totalSeconds = (int) Math.round(seconds);
-            int minutes = totalSeconds / 60;
-            int remainingSeconds = totalSeconds % 60;
-            return String.format("%02d:%02d", minutes, remainingSeconds);
+            return convertDurationToMinutesSeconds(Double.parseDouble(durationSeconds));
         } catch (NumberFormatException e) {
             return "00:00";
         }
     }
-}
-
-
 
+    private String convertDurationToMinutesSeconds(double seconds) {
+        // Song metadata only accepts two-digit minutes, anything longer is capped at 99:59
+        int totalSeconds = (int) Math.min(Math.round(seconds), 99 * 60 + 59);
+        int minutes = totalSeconds / 60;
+        int remainingSeconds = totalSeconds % 60;
+        return new String(new char[]{
+                (char) ('0' + minutes / 10), (char) ('0' + minutes % 10), ':',
+                (char) ('0' + remainingSeconds / 10), (char) ('0' + remainingSeconds % 10)
+        });
+    }
+}
@@ -0,0 +1,241 @@
+package com.akmaljon.resourceservice.service;
+
+import com.akmaljon.resourceservice.client.SongServiceClient;
+import com.akmaljon.resourceservice.dto.SongBatchItemDto;
+import com.akmaljon.resourceservice.dto.SongMetadataDto;
+import com.akmaljon.resourceservice.entity.BlobMetadata;
+import com.akmaljon.resourceservice.entity.MetadataOutboxEntry;
+import com.akmaljon.resourceservice.event.ResourceEventPublisher;
+import com.akmaljon.resourceservice.exception.ExtractionRejectedException;
+import com.akmaljon.resourceservice.exception.InvalidAudioDataException;
+import com.akmaljon.resourceservice.repository.BlobMetadataRepository;
+import com.akmaljon.resourceservice.repository.ResourceMetadata;
+import com.akmaljon.resourceservice.repository.ResourceRepository;
+import com.akmaljon.resourceservice.storage.BlobStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+@Component
+public class MetadataOutboxProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetadataOutboxProcessor.class);
+
+    private final MetadataOutboxService outboxService;
+    private final ResourceRepository resourceRepository;
+    private final BlobMetadataRepository blobMetadataRepository;
+    private final BlobStore blobStore;
+    private final MetadataExtractionService metadataExtractionService;
+    private final MetadataExtractionExecutor extractionExecutor;
+    private final SongServiceClient songServiceClient;
+    private final ResourceEventPublisher eventPublisher;
+    private final int batchSize;
+    private final boolean batchDelivery;
+    private final ThreadPoolTaskExecutor executor;
+
+    public MetadataOutboxProcessor(MetadataOutboxService outboxService,
+                                   ResourceRepository resourceRepository,
+                                   BlobMetadataRepository blobMetadataRepository,
+                                   BlobStore blobStore,
+                                   MetadataExtractionService metadataExtractionService,
+                                   MetadataExtractionExecutor extractionExecutor,
+                                   SongServiceClient songServiceClient,
+                                   Optional<ResourceEventPublisher> eventPublisher,
+                                   @Value("${resource.metadata.outbox.workers}") int workers,
+                                   @Value("${resource.metadata.outbox.batch-size}") int batchSize,
+                                   @Value("${resource.metadata.outbox.batch-delivery}") boolean batchDelivery,
+                                   @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.outboxService = outboxService;
+        this.resourceRepository = resourceRepository;
+        this.blobMetadataRepository = blobMetadataRepository;
+        this.blobStore = blobStore;
+        this.metadataExtractionService = metadataExtractionService;
+        this.extractionExecutor = extractionExecutor;
+        this.songServiceClient = songServiceClient;
+        this.eventPublisher = eventPublisher.orElse(null);
+        this.batchSize = batchSize;
+        // Events are always published per polled batch, the broker takes over the batching towards song-service
+        this.batchDelivery = batchDelivery || this.eventPublisher != null;
+
+        // Kept private to this component so it never stands in for the application task executor.
+        // These workers only do I/O; the parsing itself runs on the extraction executor
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setVirtualThreads(virtualThreads);
+        this.executor.setCorePoolSize(workers);
+        this.executor.setMaxPoolSize(workers);
+        this.executor.setQueueCapacity(batchSize);
+        this.executor.setThreadNamePrefix("metadata-outbox-");
+        this.executor.setWaitForTasksToCompleteOnShutdown(true);
+        this.executor.initialize();
+    }
+
+    @Scheduled(fixedDelayString = "${resource.metadata.outbox.poll-interval}")
+    public void drainOutbox() {
+        List<MetadataOutboxEntry> batch = outboxService.claimBatch(batchSize);
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<Future<SongMetadataDto>> futures = batch.stream()
+                .map(entry -> executor.submit(() -> process(entry)))
+                .toList();
+
+        List<MetadataOutboxEntry> readyEntries = new ArrayList<>();
+        List<SongMetadataDto> readyMetadata = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                SongMetadataDto metadata = futures.get(i).get();
+                if (metadata != null) {
+                    readyEntries.add(batch.get(i));
+                    readyMetadata.add(metadata);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                logger.error("Unexpected failure while processing metadata outbox: {}", e.getCause().getMessage());
+            }
+        }
+
+        if (!readyMetadata.isEmpty()) {
+            deliverBatch(readyEntries, readyMetadata);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // Returns the metadata when it still has to be delivered as part of the batch, null otherwise
+    private SongMetadataDto process(MetadataOutboxEntry entry) {
+        Optional<ResourceMetadata> resource = resourceRepository.findMetadataById(entry.getResourceId());
+        if (resource.isEmpty()) {
+            // Resource was deleted before its metadata went out, nothing left to deliver
+            outboxService.markDelivered(entry);
+            return null;
+        }
+
+        SongMetadataDto metadata;
+        try {
+            Optional<BlobMetadata> cached = blobMetadataRepository.findById(resource.get().checksum());
+            metadata = cached.isPresent()
+                    ? toSongMetadata(entry.getResourceId(), cached.get())
+                    : extractAndCache(entry.getResourceId(), resource.get());
+        } catch (ExtractionRejectedException e) {
+            // Extraction is saturated, leave the entry for the next poll without spending an attempt
+            outboxService.release(entry);
+            return null;
+        } catch (InvalidAudioDataException e) {
+            // A file that cannot be parsed will not parse on the next attempt either
+            outboxService.markFailed(entry, e.getMessage());
+            return null;
+        } catch (Exception e) {
+            outboxService.retryLater(entry, e.getMessage());
+            return null;
+        }
+
+        if (batchDelivery) {
+            return metadata;
+        }
+
+        deliver(entry, metadata);
+        return null;
+    }
+
+    private void deliver(MetadataOutboxEntry entry, SongMetadataDto metadata) {
+        try {
+            songServiceClient.saveSongMetadata(metadata, idempotencyKey(entry));
+            outboxService.markDelivered(entry);
+        } catch (Exception e) {
+            logger.warn("Failed to deliver metadata for resource {}: {}", entry.getResourceId(), e.getMessage());
+            settleFailedDelivery(entry, e);
+        }
+    }
+
+    // A 4xx answer is about the metadata itself and would come back on every attempt. Server errors, timeouts
+    // and an open circuit breaker are worth retrying, as are 408 and 429, which are about timing, not content
+    private void settleFailedDelivery(MetadataOutboxEntry entry, Exception e) {
+        if (isPermanentFailure(e)) {
+            outboxService.markFailed(entry, e.getMessage());
+        } else {
+            outboxService.retryLater(entry, e.getMessage());
+        }
+    }
+
+    private static boolean isPermanentFailure(Exception e) {
+        return e instanceof HttpClientErrorException clientError
+                && clientError.getStatusCode().value() != HttpStatus.REQUEST_TIMEOUT.value()
+                && clientError.getStatusCode().value() != HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    // One key per entry for all its attempts: a retry of a delivery that went through but timed out is answered
+    // by song-service as a replay, while a different song already stored under the ID still gets a 409
+    private static String idempotencyKey(MetadataOutboxEntry entry) {
+        return "outbox-" + entry.getId();
+    }
+
+    // Re-uploads of known content skip parsing entirely and reuse what the first upload extracted
+    private SongMetadataDto extractAndCache(Long resourceId, ResourceMetadata resource) throws Exception {
+        String storageKey = resource.storageKey();
+        SongMetadataDto metadata = extractionExecutor.execute(resource.size(),
+                () -> metadataExtractionService.extractMetadata(resourceId, resource.size(),
+                        (offset, length) -> blobStore.open(storageKey, offset, length)));
+
+        blobMetadataRepository.insertIfAbsent(resource.checksum(), metadata.getName(), metadata.getArtist(),
+                metadata.getAlbum(), metadata.getDuration(), metadata.getYear());
+        return metadata;
+    }
+
+    private SongMetadataDto toSongMetadata(Long resourceId, BlobMetadata cached) {
+        return new SongMetadataDto(
+                resourceId,
+                cached.getName(),
+                cached.getArtist(),
+                cached.getAlbum(),
+                cached.getDuration(),
+                cached.getYear()
+        );
+    }
+
+    private void deliverBatch(List<MetadataOutboxEntry> entries, List<SongMetadataDto> metadata) {
+        List<SongBatchItemDto> items = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            items.add(new SongBatchItemDto(metadata.get(i), idempotencyKey(entries.get(i))));
+        }
+
+        try {
+            if (eventPublisher != null) {
+                eventPublisher.publishCreated(items);
+            } else {
+                songServiceClient.saveSongMetadataBatch(items);
+            }
+            outboxService.markDelivered(entries);
+        } catch (Exception e) {
+            if (isPermanentFailure(e)) {
+                // song-service rejects the whole batch for one invalid item; delivered one at a time,
+                // only that item fails and the others go through
+                logger.warn("Metadata batch of {} resources rejected, delivering one by one: {}",
+                        entries.size(), e.getMessage());
+                for (int i = 0; i < entries.size(); i++) {
+                    deliver(entries.get(i), metadata.get(i));
+                }
+                return;
+            }
+            logger.warn("Failed to deliver metadata batch of {} resources: {}", entries.size(), e.getMessage());
+            entries.forEach(entry -> outboxService.retryLater(entry, e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.akmaljon.resourceservice.service;
+
+import com.akmaljon.resourceservice.entity.MetadataOutboxEntry;
+import com.akmaljon.resourceservice.entity.OutboxStatus;
+import com.akmaljon.resourceservice.exception.ServiceOverloadedException;
+import com.akmaljon.resourceservice.repository.MetadataOutboxRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class MetadataOutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetadataOutboxService.class);
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final MetadataOutboxRepository outboxRepository;
+    private final Duration lease;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final int maxAttempts;
+    private final long maxBacklog;
+    private final long backlogRetryAfterSeconds;
+    private final AtomicLong backlog = new AtomicLong();
+
+    public MetadataOutboxService(MetadataOutboxRepository outboxRepository,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${resource.metadata.outbox.lease}") Duration lease,
+                                 @Value("${resource.metadata.outbox.initial-backoff}") Duration initialBackoff,
+                                 @Value("${resource.metadata.outbox.max-backoff}") Duration maxBackoff,
+                                 @Value("${resource.metadata.outbox.max-attempts}") int maxAttempts,
+                                 @Value("${resource.metadata.extraction.max-backlog}") long maxBacklog,
+                                 @Value("${resource.metadata.extraction.backlog-retry-after}") Duration backlogRetryAfter) {
+        this.outboxRepository = outboxRepository;
+        this.lease = lease;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.maxAttempts = maxAttempts;
+        this.maxBacklog = maxBacklog;
+        this.backlogRetryAfterSeconds = Math.max(1, backlogRetryAfter.toSeconds());
+
+        Gauge.builder("resource.metadata.outbox.backlog", backlog, AtomicLong::get)
+                .description("Metadata outbox entries due for processing, counted up to the maximum backlog")
+                .register(meterRegistry);
+    }
+
+    // Uploads are cheap to accept but each one adds extraction work. Once the backlog is full, new uploads are
+    // turned away with 503 and Retry-After so clients back off, instead of the backlog growing without bound
+    public void checkBacklog() {
+        if (backlog.get() >= maxBacklog) {
+            throw new ServiceOverloadedException(
+                    "Too many uploads are waiting for metadata extraction, please retry later", backlogRetryAfterSeconds);
+        }
+    }
+
+    // A count per upload would add a query to every request, the poll interval is recent enough. Entries backing
+    // off, e.g. while song-service is down, are not work the workers could do now and do not turn uploads away
+    @Scheduled(fixedDelayString = "${resource.metadata.outbox.poll-interval}")
+    public void refreshBacklog() {
+        backlog.set(outboxRepository.countDueUpTo(maxBacklog));
+    }
+
+    // Must join the transaction that creates the resource, so both rows commit or neither does
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(Long resourceId) {
+        Instant now = Instant.now();
+        outboxRepository.save(new MetadataOutboxEntry(null, resourceId, OutboxStatus.PENDING, 0, now, null, now));
+    }
+
+    // Claimed entries are leased rather than locked for the whole delivery, a crashed worker's entries reappear
+    @Transactional
+    public List<MetadataOutboxEntry> claimBatch(int batchSize) {
+        Instant now = Instant.now();
+        List<MetadataOutboxEntry> entries = outboxRepository
+                .findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(OutboxStatus.PENDING, now, Limit.of(batchSize));
+        entries.forEach(entry -> entry.setNextAttemptAt(now.plus(lease)));
+        return entries;
+    }
+
+    @Transactional
+    public void markDelivered(MetadataOutboxEntry entry) {
+        outboxRepository.deleteById(entry.getId());
+    }
+
+    @Transactional
+    public void markDelivered(List<MetadataOutboxEntry> entries) {
+        outboxRepository.deleteAllByIdInBatch(entries.stream().map(MetadataOutboxEntry::getId).toList());
+    }
+
+    @Transactional
+    public void retryLater(MetadataOutboxEntry entry, String error) {
+        int attempts = entry.getAttempts() + 1;
+        if (attempts >= maxAttempts) {
+            markFailed(entry, attempts, error);
+            return;
+        }
+
+        Instant nextAttemptAt = Instant.now().plus(backoff(attempts));
+        outboxRepository.updateAttempt(entry.getId(), OutboxStatus.PENDING, attempts, nextAttemptAt, truncate(error));
+        logger.debug("Metadata delivery for resource {} failed (attempt {}), retrying at {}",
+                entry.getResourceId(), attempts, nextAttemptAt);
+    }
+
+    // Hands a claimed entry back without counting an attempt, it was never tried
+    @Transactional
+    public void release(MetadataOutboxEntry entry) {
+        outboxRepository.updateAttempt(entry.getId(), OutboxStatus.PENDING, entry.getAttempts(), Instant.now(),
+                entry.getLastError());
+    }
+
+    @Transactional
+    public void markFailed(MetadataOutboxEntry entry, String error) {
+        markFailed(entry, entry.getAttempts() + 1, error);
+    }
+
+    private void markFailed(MetadataOutboxEntry entry, int attempts, String error) {
+        outboxRepository.updateAttempt(entry.getId(), OutboxStatus.FAILED, attempts, Instant.now(), truncate(error));
+        logger.error("Giving up on metadata for resource {} after {} attempts: {}", entry.getResourceId(), attempts, error);
+    }
+
+    private Duration backoff(int attempts) {
+        // Exponential backoff: initial, 2x, 4x, ... capped at maxBackoff
+        int exponent = Math.min(attempts - 1, 30);
+        Duration backoff = initialBackoff.multipliedBy(1L << exponent);
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    private String truncate(String error) {
+        if (error == null || error.length() <= MAX_ERROR_LENGTH) {
+            return error;
+        }
+        return error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -0,0 +1,261 @@
+package com.akmaljon.resourceservice.service;
+
+import com.akmaljon.resourceservice.client.SongServiceClient;
+import com.akmaljon.resourceservice.dto.SongMetadataDto;
+import com.akmaljon.resourceservice.exception.InvalidAudioDataException;
+import com.akmaljon.resourceservice.exception.InvalidCsvFormatException;
+import com.akmaljon.resourceservice.exception.InvalidUploadException;
+import com.akmaljon.resourceservice.repository.BlobMetadataRepository;
+import com.akmaljon.resourceservice.repository.ResourceMetadata;
+import com.akmaljon.resourceservice.repository.ResourceRepository;
+import jakarta.validation.Validator;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+// Bulk export and import as a zip archive. Each resource becomes resources/<id>.mp3, preceded by
+// resources/<id>.json with its song metadata when song-service has it. Both directions stream: export
+// walks the table in keyset pages and copies blobs straight into the response, import spools entry by entry
+// and commits in batches, so memory stays bounded by the page and batch sizes
+@Service
+public class ResourceArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResourceArchiveService.class);
+    private static final String ENTRY_PREFIX = "resources/";
+    private static final String AUDIO_SUFFIX = ".mp3";
+    private static final String METADATA_SUFFIX = ".json";
+    private static final int MAX_METADATA_ENTRY_SIZE = 64 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ResourceRepository resourceRepository;
+    private final ResourceService resourceService;
+    private final BlobTieringService blobTieringService;
+    private final BlobMetadataRepository blobMetadataRepository;
+    private final MetadataOutboxService metadataOutboxService;
+    private final SongServiceClient songServiceClient;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int pageSize;
+    private final int importBatchSize;
+
+    public ResourceArchiveService(ResourceRepository resourceRepository,
+                                  ResourceService resourceService,
+                                  BlobTieringService blobTieringService,
+                                  BlobMetadataRepository blobMetadataRepository,
+                                  MetadataOutboxService metadataOutboxService,
+                                  SongServiceClient songServiceClient,
+                                  ObjectMapper objectMapper,
+                                  Validator validator,
+                                  @Value("${resource.archive.export-page-size}") int pageSize,
+                                  @Value("${resource.archive.import-batch-size}") int importBatchSize) {
+        this.resourceRepository = resourceRepository;
+        this.resourceService = resourceService;
+        this.blobTieringService = blobTieringService;
+        this.blobMetadataRepository = blobMetadataRepository;
+        this.metadataOutboxService = metadataOutboxService;
+        this.songServiceClient = songServiceClient;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.pageSize = pageSize;
+        this.importBatchSize = importBatchSize;
+    }
+
+    // Validated before the response is committed, so a bad selection still gets a 400
+    public ExportSelection selectForExport(String csvIds, Long fromId, Long toId) {
+        if (csvIds != null) {
+            if (fromId != null || toId != null) {
+                throw new InvalidCsvFormatException("Use either the id list or the fromId/toId range, not both");
+            }
+            return new ExportSelection(ResourceService.parseCsvIds(csvIds).stream().distinct().sorted().toList(), 0, 0);
+        }
+
+        long from = fromId != null ? fromId : 1;
+        long to = toId != null ? toId : Long.MAX_VALUE;
+        if (from <= 0 || to <= 0 || from > to) {
+            throw new InvalidCsvFormatException("Invalid ID range " + from + ".." + to + ". Bounds must be positive and ordered");
+        }
+        return new ExportSelection(null, from, to);
+    }
+
+    public void exportArchive(ExportSelection selection, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        // MP3 does not compress, deflating it would only cost CPU
+        zip.setLevel(Deflater.NO_COMPRESSION);
+
+        long exported = 0;
+        if (selection.ids() != null) {
+            for (int i = 0; i < selection.ids().size(); i += pageSize) {
+                List<Long> ids = selection.ids().subList(i, Math.min(i + pageSize, selection.ids().size()));
+                exported += writePage(zip, resourceRepository.findMetadataByIds(ids));
+            }
+        } else {
+            long afterId = selection.fromId() - 1;
+            List<ResourceMetadata> page;
+            while (!(page = resourceRepository.findMetadataPage(afterId, selection.toId(), pageSize)).isEmpty()) {
+                exported += writePage(zip, page);
+                afterId = page.get(page.size() - 1).id();
+            }
+        }
+
+        zip.finish();
+        zip.flush();
+        logger.info("Exported {} resources", exported);
+    }
+
+    // Imported resources get new IDs. Metadata found in the archive seeds the per-content metadata, so the
+    // outbox delivers it without parsing; entries without it are extracted by the outbox workers as usual
+    public Map<String, Long> importArchive(InputStream body) {
+        metadataOutboxService.checkBacklog();
+
+        long received = 0;
+        long imported = 0;
+        long rejected = 0;
+        List<ImportItem> batch = new ArrayList<>(importBatchSize);
+        String metadataName = null;
+        SongMetadataDto metadata = null;
+
+        try {
+            ZipInputStream zip = new ZipInputStream(body);
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (entry.isDirectory() || !name.startsWith(ENTRY_PREFIX)) {
+                    continue;
+                }
+
+                if (name.endsWith(METADATA_SUFFIX)) {
+                    metadataName = baseName(name, METADATA_SUFFIX);
+                    metadata = readMetadata(zip, name);
+                } else if (name.endsWith(AUDIO_SUFFIX)) {
+                    received++;
+                    SongMetadataDto itemMetadata = baseName(name, AUDIO_SUFFIX).equals(metadataName) ? metadata : null;
+                    metadataName = null;
+                    metadata = null;
+                    try {
+                        batch.add(new ImportItem(resourceService.spoolUpload(CloseShieldInputStream.wrap(zip)), itemMetadata));
+                    } catch (InvalidAudioDataException e) {
+                        logger.warn("Skipping archive entry {}: {}", name, e.getMessage());
+                        rejected++;
+                    }
+                    if (batch.size() >= importBatchSize) {
+                        imported += storeBatch(batch);
+                    }
+                }
+            }
+            imported += storeBatch(batch);
+        } catch (IOException e) {
+            throw new InvalidUploadException("Invalid archive after " + received + " entries: " + e.getMessage());
+        } finally {
+            resourceService.discardUploads(batch.stream().map(ImportItem::upload).toList());
+        }
+
+        logger.info("Imported {} of {} archived resources, {} rejected", imported, received, rejected);
+        return Map.of("received", received, "imported", imported, "rejected", rejected);
+    }
+
+    private long writePage(ZipOutputStream zip, List<ResourceMetadata> page) throws IOException {
+        if (page.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, SongMetadataDto> songs = findSongs(page.stream().map(ResourceMetadata::id).toList());
+        for (ResourceMetadata resource : page) {
+            FileTime createdAt = FileTime.from(resource.createdAt());
+            SongMetadataDto song = songs.get(resource.id());
+            if (song != null) {
+                ZipEntry metadataEntry = new ZipEntry(ENTRY_PREFIX + resource.id() + METADATA_SUFFIX);
+                metadataEntry.setLastModifiedTime(createdAt);
+                zip.putNextEntry(metadataEntry);
+                zip.write(objectMapper.writeValueAsBytes(song));
+                zip.closeEntry();
+            }
+
+            ZipEntry audioEntry = new ZipEntry(ENTRY_PREFIX + resource.id() + AUDIO_SUFFIX);
+            audioEntry.setLastModifiedTime(createdAt);
+            zip.putNextEntry(audioEntry);
+            // Cold blobs are read in place, an export must not promote the whole catalogue
+            try (InputStream in = blobTieringService.openInPlace(resource.storageKey(), resource.tier())) {
+                in.transferTo(zip);
+            }
+            zip.closeEntry();
+        }
+        return page.size();
+    }
+
+    // Metadata is an addition to the archive, not a requirement: without song-service the audio is still exported
+    private Map<Long, SongMetadataDto> findSongs(List<Long> ids) {
+        Map<Long, SongMetadataDto> songs = new HashMap<>();
+        try {
+            for (SongMetadataDto song : songServiceClient.findSongMetadataByIds(ids)) {
+                songs.put(song.getId(), song);
+            }
+        } catch (Exception e) {
+            logger.warn("Exporting resources {}..{} without song metadata: {}", ids.get(0), ids.get(ids.size() - 1), e.getMessage());
+        }
+        return songs;
+    }
+
+    private SongMetadataDto readMetadata(ZipInputStream zip, String name) throws IOException {
+        byte[] content = zip.readNBytes(MAX_METADATA_ENTRY_SIZE);
+        try {
+            SongMetadataDto metadata = objectMapper.readValue(content, SongMetadataDto.class);
+            if (validator.validate(metadata).isEmpty()) {
+                return metadata;
+            }
+        } catch (JacksonException e) {
+            // Fall through, the audio is still imported and its metadata extracted
+        }
+        logger.warn("Ignoring invalid metadata entry {}", name);
+        return null;
+    }
+
+    private long storeBatch(List<ImportItem> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        List<ImportItem> items = List.copyOf(batch);
+        batch.clear();
+        // storeUploads writes the blobs before its transaction opens; the seeded metadata joins that
+        // transaction, so no connection is held while bytes are copied
+        resourceService.storeUploads(items.stream().map(ImportItem::upload).toList(), () -> {
+            for (ImportItem item : items) {
+                SongMetadataDto metadata = item.metadata();
+                if (metadata != null) {
+                    blobMetadataRepository.insertIfAbsent(item.upload().checksum(), metadata.getName(),
+                            metadata.getArtist(), metadata.getAlbum(), metadata.getDuration(), metadata.getYear());
+                }
+            }
+        });
+        return items.size();
+    }
+
+    private static String baseName(String name, String suffix) {
+        return name.substring(ENTRY_PREFIX.length(), name.length() - suffix.length());
+    }
+
+    // Either a sorted list of IDs or an inclusive ID range
+    public record ExportSelection(List<Long> ids, long fromId, long toId) {
+    }
+
+    private record ImportItem(ResourceService.SpooledUpload upload, SongMetadataDto metadata) {
+    }
+}
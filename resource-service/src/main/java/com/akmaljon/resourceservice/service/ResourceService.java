@@ -1,81 +1,348 @@
 package com.akmaljon.resourceservice.service;
 
+import com.akmaljon.resourceservice.cache.CachedResource;
+import com.akmaljon.resourceservice.cache.ResourceCache;
 import com.akmaljon.resourceservice.client.SongServiceClient;
-import com.akmaljon.resourceservice.dto.SongMetadataDto;
 import com.akmaljon.resourceservice.entity.Resource;
+import com.akmaljon.resourceservice.entity.StorageTier;
+import com.akmaljon.resourceservice.event.ResourceEventPublisher;
+import com.akmaljon.resourceservice.exception.BlobNotFoundException;
 import com.akmaljon.resourceservice.exception.InvalidAudioDataException;
 import com.akmaljon.resourceservice.exception.InvalidCsvFormatException;
 import com.akmaljon.resourceservice.exception.ResourceNotFoundException;
+import com.akmaljon.resourceservice.repository.ResourceMetadata;
 import com.akmaljon.resourceservice.repository.ResourceRepository;
-import lombok.RequiredArgsConstructor;
+import com.akmaljon.resourceservice.repository.StoredBlobRepository;
+import com.akmaljon.resourceservice.storage.BlobStore;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @Service
-@RequiredArgsConstructor
 public class ResourceService {
 
     private static final Logger logger = LoggerFactory.getLogger(ResourceService.class);
     private static final int MAX_CSV_LENGTH = 200;
+    private static final int MP3_HEADER_LENGTH = 3;
+    private static final int SPOOL_BUFFER_SIZE = 64 * 1024;
+    private static final String AUDIO_MPEG = "audio/mpeg";
 
     private final ResourceRepository resourceRepository;
-    private final MetadataExtractionService metadataExtractionService;
+    private final StoredBlobRepository storedBlobRepository;
+    private final MetadataOutboxService metadataOutboxService;
+    private final BlobAccessTracker blobAccessTracker;
+    private final BlobTieringService blobTieringService;
+    private final ResourceCache resourceCache;
     private final SongServiceClient songServiceClient;
+    private final ResourceEventPublisher eventPublisher;
+    private final BlobStore blobStore;
+    private final TransactionTemplate transactionTemplate;
+    private final Path spoolDirectory;
+    private final DistributionSummary uploadedBytes;
 
-    @Transactional
-    public Map<String, Long> uploadResource(byte[] audioData) {
-        validateAudioData(audioData);
+    public ResourceService(ResourceRepository resourceRepository,
+                           StoredBlobRepository storedBlobRepository,
+                           MetadataOutboxService metadataOutboxService,
+                           BlobAccessTracker blobAccessTracker,
+                           BlobTieringService blobTieringService,
+                           ResourceCache resourceCache,
+                           SongServiceClient songServiceClient,
+                           Optional<ResourceEventPublisher> eventPublisher,
+                           BlobStore blobStore,
+                           TransactionTemplate transactionTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${resource.upload.spool-dir}") Path spoolDirectory) {
+        this.resourceRepository = resourceRepository;
+        this.storedBlobRepository = storedBlobRepository;
+        this.metadataOutboxService = metadataOutboxService;
+        this.blobAccessTracker = blobAccessTracker;
+        this.blobTieringService = blobTieringService;
+        this.resourceCache = resourceCache;
+        this.songServiceClient = songServiceClient;
+        this.eventPublisher = eventPublisher.orElse(null);
+        this.blobStore = blobStore;
+        this.transactionTemplate = transactionTemplate;
+        this.spoolDirectory = spoolDirectory;
+        // Count and total give upload rate and byte throughput, the histogram the size distribution
+        this.uploadedBytes = DistributionSummary.builder("resource.upload.size")
+                .description("Size of accepted uploads")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 
-        Resource resource = new Resource();
-        resource.setData(audioData);
-        Resource savedResource = resourceRepository.save(resource);
+    // Only spools, stores and records the upload; metadata extraction and delivery to song-service
+    // happen asynchronously from the outbox, so upload latency depends on neither.
+    // Content is addressed by its SHA-256: identical uploads share one blob and are stored once
+    public Map<String, Long> uploadResource(InputStream audioStream) {
+        metadataOutboxService.checkBacklog();
+        SpooledUpload upload = spoolUpload(audioStream);
+        return Map.of("id", storeUploads(List.of(upload)).get(0));
+    }
 
+    // Validates the audio data and writes it to a spool file, hashing it on the way. The stream is closed
+    SpooledUpload spoolUpload(InputStream audioStream) {
+        Path spoolFile = createSpoolFile();
         try {
-            SongMetadataDto metadata = metadataExtractionService.extractMetadata(savedResource.getId(), audioData);
-            songServiceClient.saveSongMetadata(metadata);
+            return spool(audioStream, spoolFile);
+        } catch (IOException e) {
+            deleteSpoolFile(spoolFile);
+            throw new UncheckedIOException("Failed to store uploaded audio data", e);
+        } catch (RuntimeException e) {
+            deleteSpoolFile(spoolFile);
+            throw e;
+        }
+    }
+
+    // Writes the bytes of new content first, then records all uploads in one short transaction that only
+    // inserts rows. Bytes written for a transaction that does not commit are left to the garbage collector.
+    // A cold blob revived with freshly written hot bytes loses its cold copy once the transaction commits.
+    // Spool files are consumed either way
+    List<Long> storeUploads(List<SpooledUpload> uploads) {
+        return storeUploads(uploads, () -> {
+        });
+    }
+
+    // inTransaction runs after the rows are inserted, within the same transaction
+    List<Long> storeUploads(List<SpooledUpload> uploads, Runnable inTransaction) {
+        Set<SpooledUpload> written = new HashSet<>();
+        List<String> revivedCold = new ArrayList<>();
+        try {
+            for (SpooledUpload upload : uploads) {
+                if (writeBlobIfUnreferenced(upload)) {
+                    written.add(upload);
+                }
+            }
+            List<Long> ids = transactionTemplate.execute(status -> {
+                List<Long> stored = uploads.stream()
+                        .map(upload -> storeUpload(upload, written.contains(upload), revivedCold))
+                        .toList();
+                inTransaction.run();
+                return stored;
+            });
+            revivedCold.forEach(blobTieringService::deleteColdCopy);
+            uploads.forEach(upload -> uploadedBytes.record(upload.size()));
+            return ids;
+        } catch (RuntimeException e) {
+            written.forEach(this::releaseBlob);
+            throw e;
+        } finally {
+            uploads.forEach(upload -> deleteSpoolFile(upload.file()));
+        }
+    }
+
+    void discardUploads(List<SpooledUpload> uploads) {
+        uploads.forEach(upload -> deleteSpoolFile(upload.file()));
+    }
+
+    // Content that is already referenced is not written again. Touching the row first keeps the garbage
+    // collector away from an unreferenced blob until this upload has referenced it
+    private boolean writeBlobIfUnreferenced(SpooledUpload upload) {
+        Optional<Integer> refCount = storedBlobRepository.touch(upload.checksum());
+        if (refCount.isPresent() && refCount.get() > 0) {
+            logger.debug("Reusing stored blob {} ({} references)", upload.checksum(), refCount.get());
+            return false;
+        }
+        blobStore.put(upload.checksum(), upload.file());
+        return true;
+    }
+
+    private void releaseBlob(SpooledUpload upload) {
+        try {
+            storedBlobRepository.insertUnreferenced(upload.checksum(), upload.checksum(), upload.size());
         } catch (Exception e) {
-            // Metadata extraction or saving to song service failed, but resource is saved
-            logger.warn("Failed to process metadata for resource {}: {}", savedResource.getId(), e.getMessage());
+            logger.warn("Failed to release blob {} of a failed upload: {}", upload.checksum(), e.getMessage());
         }
+    }
 
-        var id = savedResource.getId();
-        return Map.of("id", id);
+    private Long storeUpload(SpooledUpload upload, boolean written, List<String> revivedCold) {
+        String storageKey = upload.checksum();
+        if (storedBlobRepository.acquireReference(upload.checksum(), storageKey, upload.size(), written)) {
+            revivedCold.add(storageKey);
+        }
+
+        Resource savedResource = resourceRepository.save(new Resource(
+                null, storageKey, upload.size(), upload.checksum(), AUDIO_MPEG, Instant.now()));
+        metadataOutboxService.enqueue(savedResource.getId());
+        return savedResource.getId();
     }
 
-    public byte[] getResource(String id) {
+    public CachedResource getResource(String id) {
         Long resourceId = validateAndParseId(id);
-        Resource resource = resourceRepository.findById(resourceId)
-                .orElseThrow(() -> new ResourceNotFoundException(resourceId));
-        return resource.getData();
+        CachedResource resource = resourceCache.get(resourceId, this::loadResource);
+        if (resource.metadata().tier().isReadFromColdStore()) {
+            // Served from the cold copy while another reader promotes it; the next read should find it hot
+            resourceCache.invalidate(resourceId);
+        }
+        blobAccessTracker.recordAccess(resource.metadata().checksum());
+        return resource;
+    }
+
+    // Cold copies are compressed, there is no file to send as is
+    public Optional<Path> getLocalPath(ResourceMetadata resource) {
+        if (resource.tier().isReadFromColdStore()) {
+            return Optional.empty();
+        }
+        return blobStore.localPath(resource.storageKey());
+    }
+
+    // The row may come from the cache and be stale: the resource deleted on another instance, or its blob moved
+    // to the cold tier meanwhile. A missing blob drops the entry and is opened once more from the current row;
+    // a resource that is gone by now answers 404
+    public InputStream openContent(ResourceMetadata resource, long offset, long length) {
+        try {
+            return open(resource, offset, length);
+        } catch (BlobNotFoundException e) {
+            resourceCache.invalidate(resource.id());
+            ResourceMetadata current = resourceCache.get(resource.id(), this::loadResource).metadata();
+            return open(current, offset, length);
+        }
+    }
+
+    private InputStream open(ResourceMetadata resource, long offset, long length) {
+        if (!resource.tier().isReadFromColdStore()) {
+            return blobStore.open(resource.storageKey(), offset, length);
+        }
+
+        // The cold copy is gzip-compressed, a range is read by decompressing up to it
+        InputStream in = blobTieringService.openInPlace(resource.storageKey(), resource.tier());
+        try {
+            IOUtils.skipFully(in, offset);
+            return BoundedInputStream.builder().setInputStream(in).setMaxCount(length).get();
+        } catch (IOException e) {
+            IOUtils.closeQuietly(in);
+            throw new UncheckedIOException("Failed to read cold blob of resource " + resource.id(), e);
+        }
     }
 
     @Transactional
     public Map<String, List<Long>> deleteResources(String csvIds) {
-        List<Long> ids = parseCsvIds(csvIds);
-        List<Long> deletedIds = new ArrayList<>();
+        return deleteResources(parseCsvIds(csvIds));
+    }
 
-        for (Long id : ids) {
-            if (!resourceRepository.existsById(id)) {
-                continue;
-            }
-            resourceRepository.deleteById(id);
-            deletedIds.add(id);
-        }
+    // One DELETE ... RETURNING round-trip regardless of how many IDs are requested, blobs are never read
+    @Transactional
+    public Map<String, List<Long>> deleteResources(List<Long> ids) {
+        Set<Long> existingIds = new HashSet<>(resourceRepository.deleteAllByIdReturningIds(ids));
+
+        List<Long> deletedIds = ids.stream()
+                .distinct()
+                .filter(existingIds::contains)
+                .toList();
 
         if (!deletedIds.isEmpty()) {
-            songServiceClient.deleteSongMetadata(deletedIds);
+            resourceCache.invalidateAfterCommit(deletedIds);
+            if (eventPublisher != null) {
+                eventPublisher.publishDeletedAfterCommit(deletedIds);
+            } else {
+                songServiceClient.deleteSongMetadata(deletedIds);
+            }
         }
 
         return Map.of("ids", deletedIds);
     }
 
-    private void validateAudioData(byte[] audioData) {
+    // Cold blobs are moved back to the primary store before they are served, so range requests and
+    // zero-copy transfer work the same for every resource. Content is kept in memory only when it is small
+    // and the store cannot hand out a local file; a local file is served from the page cache with sendfile.
+    // A blob another reader is promoting is streamed from its cold copy instead of waiting for it
+    private CachedResource loadResource(Long resourceId) {
+        ResourceMetadata resource = resourceRepository.findMetadataById(resourceId)
+                .orElseThrow(() -> new ResourceNotFoundException(resourceId));
+
+        if (resource.tier().isReadFromColdStore()) {
+            boolean hot = resource.tier() == StorageTier.COLD && blobTieringService.promote(resource.checksum());
+            resource = new ResourceMetadata(resource.id(), resource.storageKey(), resource.size(),
+                    resource.checksum(), resource.contentType(), resource.createdAt(), hot ? StorageTier.HOT : resource.tier());
+            if (!hot) {
+                return new CachedResource(resource, null);
+            }
+        }
+
+        ByteBuffer content = null;
+        if (resourceCache.isCacheableContent(resource.size()) && blobStore.localPath(resource.storageKey()).isEmpty()) {
+            content = readContent(resource);
+        }
+        return new CachedResource(resource, content);
+    }
+
+    private ByteBuffer readContent(ResourceMetadata resource) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.toIntExact(resource.size()));
+        try (ReadableByteChannel channel = Channels.newChannel(blobStore.open(resource.storageKey()))) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) == -1) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read blob of resource " + resource.id(), e);
+        }
+        if (buffer.hasRemaining()) {
+            throw new IllegalStateException("Blob of resource " + resource.id() + " is shorter than its recorded size");
+        }
+        return buffer.flip().asReadOnlyBuffer();
+    }
+
+    private SpooledUpload spool(InputStream audioStream, Path spoolFile) throws IOException {
+        MessageDigest digest = newSha256Digest();
+        try (PushbackInputStream in = new PushbackInputStream(audioStream, MP3_HEADER_LENGTH);
+             OutputStream out = new DigestOutputStream(
+                     new BufferedOutputStream(Files.newOutputStream(spoolFile), SPOOL_BUFFER_SIZE), digest)) {
+            validateAudioData(in);
+            long size = in.transferTo(out);
+            return new SpooledUpload(spoolFile, HexFormat.of().formatHex(digest.digest()), size);
+        }
+    }
+
+    private MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private void validateAudioData(PushbackInputStream in) throws IOException {
+        byte[] header = in.readNBytes(MP3_HEADER_LENGTH);
+        if (header.length == 0) {
+            throw new InvalidAudioDataException("Audio data cannot be empty");
+        }
+        in.unread(header);
+        validateAudioData(header);
+    }
+
+    // Package-private and static so the benchmarks module can measure it without a Spring context
+    static void validateAudioData(byte[] audioData) {
         if (audioData == null || audioData.length == 0) {
             throw new InvalidAudioDataException("Audio data cannot be empty");
         }
@@ -94,7 +361,23 @@ public class ResourceService {
         }
     }
 
-    private Long validateAndParseId(String id) {
+    private Path createSpoolFile() {
+        try {
+            return Files.createTempFile(spoolDirectory, "upload-", ".part");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create spool file for upload", e);
+        }
+    }
+
+    private void deleteSpoolFile(Path spoolFile) {
+        try {
+            Files.deleteIfExists(spoolFile);
+        } catch (IOException e) {
+            logger.warn("Failed to delete spool file {}: {}", spoolFile, e.getMessage());
+        }
+    }
+
+    static Long validateAndParseId(String id) {
         try {
             Long parsedId = Long.parseLong(id);
             if (parsedId <= 0) {
@@ -106,7 +389,7 @@ public class ResourceService {
         }
     }
 
-    private List<Long> parseCsvIds(String csvIds) {
+    static List<Long> parseCsvIds(String csvIds) {
         if (csvIds == null || csvIds.isBlank()) {
             throw new InvalidCsvFormatException("ID parameter cannot be empty");
         }
@@ -137,7 +420,7 @@ public class ResourceService {
 
         return ids;
     }
-}
-
-
 
+    record SpooledUpload(Path file, String checksum, long size) {
+    }
+}
@@ -0,0 +1,150 @@
+package com.akmaljon.resourceservice.service;
+
+import com.akmaljon.resourceservice.client.SongServiceClient;
+import com.akmaljon.resourceservice.repository.IdRangeDigest;
+import com.akmaljon.resourceservice.repository.MetadataOutboxRepository;
+import com.akmaljon.resourceservice.repository.ResourceRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Brings songs back in line with resources. Walks the resource IDs in ranges of range-size rows and
+// compares a digest of each range with song-service's; only ranges that differ are listed on both sides.
+// Resources without a song and without an outbox entry get their metadata queued again, songs without a resource are deleted.
+// Each run checks a few ranges and stops at the repair limit, the position carries over to the next run
+@Component
+public class SongReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(SongReconciler.class);
+    private static final int DELETE_CHUNK_SIZE = 1000;
+
+    private final ResourceRepository resourceRepository;
+    private final MetadataOutboxRepository outboxRepository;
+    private final SongServiceClient songServiceClient;
+    private final boolean enabled;
+    private final int rangeSize;
+    private final int rangesPerRun;
+    private final int maxRepairsPerRun;
+    private final Counter matchingRanges;
+    private final Counter differingRanges;
+    private final Counter requeuedResources;
+    private final Counter purgedSongs;
+
+    // Last resource ID of the previous range; only touched by the scheduler thread
+    private long afterId;
+
+    public SongReconciler(ResourceRepository resourceRepository,
+                          MetadataOutboxRepository outboxRepository,
+                          SongServiceClient songServiceClient,
+                          MeterRegistry meterRegistry,
+                          @Value("${resource.reconciler.enabled}") boolean enabled,
+                          @Value("${resource.reconciler.range-size}") int rangeSize,
+                          @Value("${resource.reconciler.ranges-per-run}") int rangesPerRun,
+                          @Value("${resource.reconciler.max-repairs-per-run}") int maxRepairsPerRun) {
+        this.resourceRepository = resourceRepository;
+        this.outboxRepository = outboxRepository;
+        this.songServiceClient = songServiceClient;
+        this.enabled = enabled;
+        this.rangeSize = rangeSize;
+        this.rangesPerRun = rangesPerRun;
+        this.maxRepairsPerRun = maxRepairsPerRun;
+        this.matchingRanges = rangeCounter(meterRegistry, "match");
+        this.differingRanges = rangeCounter(meterRegistry, "differ");
+        this.requeuedResources = repairCounter(meterRegistry, "requeue");
+        this.purgedSongs = repairCounter(meterRegistry, "purge");
+    }
+
+    @Scheduled(initialDelayString = "${resource.reconciler.interval}", fixedDelayString = "${resource.reconciler.interval}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+
+        int repairs = 0;
+        for (int i = 0; i < rangesPerRun && repairs < maxRepairsPerRun; i++) {
+            Long upperId = resourceRepository.findNthIdAfter(afterId, rangeSize);
+            long idFrom = afterId + 1;
+            // The last range is open-ended, so songs above the highest resource ID are covered as well
+            long idTo = upperId != null ? upperId : Long.MAX_VALUE;
+            try {
+                repairs += reconcileRange(idFrom, idTo);
+            } catch (Exception e) {
+                // Same range again on the next run
+                logger.warn("Reconciliation of IDs {}..{} failed: {}", idFrom, idTo, e.getMessage());
+                return;
+            }
+
+            if (upperId == null) {
+                afterId = 0;
+                logger.debug("Reconciliation pass complete");
+                return;
+            }
+            afterId = upperId;
+        }
+    }
+
+    private int reconcileRange(long idFrom, long idTo) {
+        IdRangeDigest resourceDigest = resourceRepository.digestIdRange(idFrom, idTo);
+        IdRangeDigest songDigest = songServiceClient.digestSongIds(idFrom, idTo);
+        if (resourceDigest.equals(songDigest)) {
+            matchingRanges.increment();
+            return 0;
+        }
+        differingRanges.increment();
+
+        Set<Long> resourceIds = new HashSet<>(resourceRepository.findIdsInRange(idFrom, idTo));
+        Set<Long> songIds = new HashSet<>(songServiceClient.findSongIds(idFrom, idTo));
+
+        List<Long> missing = resourceIds.stream().filter(id -> !songIds.contains(id)).sorted().toList();
+        List<Long> orphaned = new ArrayList<>(songIds.stream().filter(id -> !resourceIds.contains(id)).sorted().toList());
+
+        int repairs = 0;
+        if (!missing.isEmpty()) {
+            // Resources still in the outbox are left to it, including those given up on as FAILED
+            int queued = outboxRepository.enqueueIfNotQueued(missing);
+            requeuedResources.increment(queued);
+            repairs += queued;
+        }
+
+        if (!orphaned.isEmpty()) {
+            // A song is only created once its resource has committed, so resources uploaded since the listing
+            // show up in this second read and their songs are kept
+            orphaned.removeAll(resourceRepository.findExistingIds(orphaned));
+            for (int i = 0; i < orphaned.size(); i += DELETE_CHUNK_SIZE) {
+                List<Long> chunk = orphaned.subList(i, Math.min(i + DELETE_CHUNK_SIZE, orphaned.size()));
+                songServiceClient.deleteSongs(chunk);
+                purgedSongs.increment(chunk.size());
+                repairs += chunk.size();
+            }
+        }
+
+        if (repairs > 0) {
+            logger.info("Reconciled IDs {}..{}: {} resources requeued, {} orphaned songs deleted",
+                    idFrom, idTo, repairs - orphaned.size(), orphaned.size());
+        }
+        return repairs;
+    }
+
+    private static Counter rangeCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("resource.reconciler.ranges")
+                .description("ID ranges compared between resources and songs")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static Counter repairCounter(MeterRegistry meterRegistry, String action) {
+        return Counter.builder("resource.reconciler.repairs")
+                .description("Differences between resources and songs repaired")
+                .tag("action", action)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,335 @@
+package com.akmaljon.resourceservice.service;
+
+import com.akmaljon.resourceservice.dto.UploadStatusDto;
+import com.akmaljon.resourceservice.entity.UploadChunk;
+import com.akmaljon.resourceservice.entity.UploadSession;
+import com.akmaljon.resourceservice.entity.UploadStatus;
+import com.akmaljon.resourceservice.exception.InvalidUploadException;
+import com.akmaljon.resourceservice.exception.UploadConflictException;
+import com.akmaljon.resourceservice.exception.UploadNotFoundException;
+import com.akmaljon.resourceservice.repository.UploadChunkRepository;
+import com.akmaljon.resourceservice.repository.UploadSessionRepository;
+import com.akmaljon.resourceservice.storage.BlobStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+// Resumable uploads: chunks are stored in the blob store as they arrive, each verified against the checksum
+// sent with it. Completing the upload streams the chunks in order through the regular upload path, so
+// validation, deduplication and metadata extraction behave exactly as for a single-request upload
+@Service
+public class UploadSessionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadSessionService.class);
+    private static final int SPOOL_BUFFER_SIZE = 64 * 1024;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadChunkRepository uploadChunkRepository;
+    private final ResourceService resourceService;
+    private final BlobStore blobStore;
+    private final TransactionTemplate transactionTemplate;
+    private final Path spoolDirectory;
+    private final long maxChunkSize;
+    private final Duration sessionTtl;
+    private final Duration completingTimeout;
+    private final int cleanupBatchSize;
+
+    public UploadSessionService(UploadSessionRepository uploadSessionRepository,
+                                UploadChunkRepository uploadChunkRepository,
+                                ResourceService resourceService,
+                                BlobStore blobStore,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${resource.upload.spool-dir}") Path spoolDirectory,
+                                @Value("${resource.upload.chunked.max-chunk-size}") DataSize maxChunkSize,
+                                @Value("${resource.upload.chunked.session-ttl}") Duration sessionTtl,
+                                @Value("${resource.upload.chunked.completing-timeout}") Duration completingTimeout,
+                                @Value("${resource.upload.chunked.cleanup-batch-size}") int cleanupBatchSize) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.uploadChunkRepository = uploadChunkRepository;
+        this.resourceService = resourceService;
+        this.blobStore = blobStore;
+        this.transactionTemplate = transactionTemplate;
+        this.spoolDirectory = spoolDirectory;
+        this.maxChunkSize = maxChunkSize.toBytes();
+        this.sessionTtl = sessionTtl;
+        this.completingTimeout = completingTimeout;
+        this.cleanupBatchSize = cleanupBatchSize;
+    }
+
+    public Map<String, String> initiateUpload() {
+        Instant now = Instant.now();
+        UploadSession session = uploadSessionRepository.save(new UploadSession(
+                UUID.randomUUID().toString(), UploadStatus.OPEN, now, now.plus(sessionTtl)));
+        logger.debug("Initiated upload {}", session.getId());
+        return Map.of("uploadId", session.getId());
+    }
+
+    public UploadStatusDto getUploadStatus(String uploadId) {
+        UploadSession session = findOpenSession(uploadId);
+        List<Integer> received = uploadChunkRepository.findByUploadIdOrderByChunkIndex(uploadId).stream()
+                .map(UploadChunk::getChunkIndex)
+                .toList();
+        return new UploadStatusDto(session.getId(), session.getExpiresAt(), received);
+    }
+
+    // Chunks may arrive in any order and in parallel; re-sending a chunk replaces it
+    public Map<String, Object> storeChunk(String uploadId, int index, String expectedChecksum, InputStream body) {
+        if (index < 0) {
+            throw new InvalidUploadException("Invalid chunk index " + index + ". Must be a non-negative integer");
+        }
+        if (expectedChecksum == null || !expectedChecksum.matches("^[0-9a-fA-F]{64}$")) {
+            throw new InvalidUploadException("A SHA-256 checksum of the chunk in hex is required");
+        }
+        if (findOpenSession(uploadId).getStatus() != UploadStatus.OPEN) {
+            throw new UploadConflictException(uploadId);
+        }
+
+        Path spoolFile = createSpoolFile();
+        try {
+            SpooledChunk chunk = spool(body, spoolFile);
+            if (chunk.size() == 0) {
+                throw new InvalidUploadException("Chunk " + index + " is empty");
+            }
+            if (!chunk.checksum().equalsIgnoreCase(expectedChecksum)) {
+                throw new InvalidUploadException("Checksum mismatch for chunk " + index);
+            }
+
+            // The bytes are written before the row, outside any transaction; the key names the content, so a
+            // re-sent chunk never overwrites bytes a completion may be reading
+            String key = chunkKey(uploadId, index, chunk.checksum());
+            blobStore.put(key, spoolFile);
+            String replaced;
+            try {
+                replaced = transactionTemplate.execute(status -> {
+                    if (uploadSessionRepository.lockOpen(uploadId).isEmpty()) {
+                        throw new UploadConflictException(uploadId);
+                    }
+                    Optional<String> previous = uploadChunkRepository.findChecksum(uploadId, index);
+                    uploadChunkRepository.upsert(uploadId, index, chunk.size(), chunk.checksum());
+                    return previous.orElse(null);
+                });
+            } catch (RuntimeException e) {
+                deleteUnrecordedChunk(uploadId, index, chunk.checksum());
+                throw e;
+            }
+            if (replaced != null && !replaced.equals(chunk.checksum())) {
+                deleteChunk(uploadId, index, replaced);
+            }
+            return Map.of("index", index, "size", chunk.size());
+        } finally {
+            deleteSpoolFile(spoolFile);
+        }
+    }
+
+    // The same content may already be recorded under this key by an earlier send of the chunk
+    private void deleteUnrecordedChunk(String uploadId, int index, String checksum) {
+        try {
+            if (uploadChunkRepository.findChecksum(uploadId, index).filter(checksum::equals).isEmpty()) {
+                deleteChunk(uploadId, index, checksum);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to remove unrecorded chunk {} of upload {}: {}", index, uploadId, e.getMessage());
+        }
+    }
+
+    public Map<String, Long> completeUpload(String uploadId, int chunkCount) {
+        findOpenSession(uploadId);
+        if (uploadSessionRepository.updateStatus(uploadId, UploadStatus.OPEN, UploadStatus.COMPLETING) == 0) {
+            throw new UploadConflictException(uploadId);
+        }
+
+        try {
+            List<UploadChunk> chunks = uploadChunkRepository.findByUploadIdOrderByChunkIndex(uploadId);
+            verifyComplete(chunks, chunkCount);
+
+            Map<String, Long> id;
+            try (InputStream content = new SequenceInputStream(chunkStreams(uploadId, chunks))) {
+                id = resourceService.uploadResource(content);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read chunks of upload " + uploadId, e);
+            }
+
+            discard(uploadId, chunks);
+            logger.info("Completed upload {} from {} chunks as resource {}", uploadId, chunkCount, id.get("id"));
+            return id;
+        } catch (RuntimeException e) {
+            // Leave the session resumable, the client may fix the problem and complete again
+            uploadSessionRepository.updateStatus(uploadId, UploadStatus.COMPLETING, UploadStatus.OPEN);
+            throw e;
+        }
+    }
+
+    public void abortUpload(String uploadId) {
+        findOpenSession(uploadId);
+        if (uploadSessionRepository.updateStatus(uploadId, UploadStatus.OPEN, UploadStatus.COMPLETING) == 0) {
+            throw new UploadConflictException(uploadId);
+        }
+        discard(uploadId, uploadChunkRepository.findByUploadIdOrderByChunkIndex(uploadId));
+    }
+
+    // An expired open session is claimed like an abort first, so it cannot be completed while it is removed.
+    // Sessions being completed are left alone unless they are still COMPLETING completing-timeout after expiry
+    @Scheduled(fixedDelayString = "${resource.upload.chunked.cleanup-interval}")
+    public void removeExpiredUploads() {
+        Instant now = Instant.now();
+        List<UploadSession> expired = uploadSessionRepository.findExpired(
+                now, now.minus(completingTimeout), Limit.of(cleanupBatchSize));
+        int removed = 0;
+        for (UploadSession session : expired) {
+            try {
+                if (session.getStatus() == UploadStatus.OPEN
+                        && uploadSessionRepository.updateStatus(session.getId(), UploadStatus.OPEN, UploadStatus.COMPLETING) == 0) {
+                    continue;
+                }
+                discard(session.getId(), uploadChunkRepository.findByUploadIdOrderByChunkIndex(session.getId()));
+                removed++;
+            } catch (Exception e) {
+                logger.warn("Failed to remove expired upload {}: {}", session.getId(), e.getMessage());
+            }
+        }
+
+        if (removed > 0) {
+            logger.info("Removed {} expired uploads", removed);
+        }
+    }
+
+    private UploadSession findOpenSession(String uploadId) {
+        return uploadSessionRepository.findById(uploadId)
+                .filter(session -> session.getExpiresAt().isAfter(Instant.now()))
+                .orElseThrow(() -> new UploadNotFoundException(uploadId));
+    }
+
+    private void verifyComplete(List<UploadChunk> chunks, int chunkCount) {
+        List<Integer> missing = new ArrayList<>();
+        int next = 0;
+        for (UploadChunk chunk : chunks) {
+            if (chunk.getChunkIndex() >= chunkCount) {
+                throw new InvalidUploadException("Chunk " + chunk.getChunkIndex() + " is beyond the chunk count " + chunkCount);
+            }
+            while (next < chunk.getChunkIndex()) {
+                missing.add(next++);
+            }
+            next = chunk.getChunkIndex() + 1;
+        }
+        while (next < chunkCount) {
+            missing.add(next++);
+        }
+
+        if (!missing.isEmpty()) {
+            throw new InvalidUploadException("Upload is missing chunks " + missing);
+        }
+    }
+
+    // Opens each chunk only when the previous one has been read to the end
+    private Enumeration<InputStream> chunkStreams(String uploadId, List<UploadChunk> chunks) {
+        Iterator<UploadChunk> remaining = chunks.iterator();
+        return new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return remaining.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                UploadChunk chunk = remaining.next();
+                return blobStore.open(chunkKey(uploadId, chunk.getChunkIndex(), chunk.getChecksum()));
+            }
+        };
+    }
+
+    // Rows go first: a chunk blob without a row is harmless, a row without its blob would break completion
+    private void discard(String uploadId, List<UploadChunk> chunks) {
+        uploadSessionRepository.deleteById(uploadId);
+        for (UploadChunk chunk : chunks) {
+            deleteChunk(uploadId, chunk.getChunkIndex(), chunk.getChecksum());
+        }
+    }
+
+    private void deleteChunk(String uploadId, int index, String checksum) {
+        try {
+            blobStore.delete(chunkKey(uploadId, index, checksum));
+        } catch (Exception e) {
+            logger.warn("Failed to delete chunk {} of upload {}: {}", index, uploadId, e.getMessage());
+        }
+    }
+
+    private SpooledChunk spool(InputStream body, Path spoolFile) {
+        MessageDigest digest = newSha256Digest();
+        try (OutputStream out = new DigestOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(spoolFile), SPOOL_BUFFER_SIZE), digest)) {
+            byte[] buffer = new byte[SPOOL_BUFFER_SIZE];
+            long size = 0;
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                size += read;
+                if (size > maxChunkSize) {
+                    throw new InvalidUploadException("Chunk exceeds the maximum size of " + maxChunkSize + " bytes");
+                }
+                out.write(buffer, 0, read);
+            }
+            out.flush();
+            return new SpooledChunk(HexFormat.of().formatHex(digest.digest()), size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store upload chunk", e);
+        }
+    }
+
+    private Path createSpoolFile() {
+        try {
+            return Files.createTempFile(spoolDirectory, "chunk-", ".part");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create spool file for upload chunk", e);
+        }
+    }
+
+    private void deleteSpoolFile(Path spoolFile) {
+        try {
+            Files.deleteIfExists(spoolFile);
+        } catch (IOException e) {
+            logger.warn("Failed to delete spool file {}: {}", spoolFile, e.getMessage());
+        }
+    }
+
+    private MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Chunk keys start with the random upload ID, so they spread over the blob store's directories
+    private static String chunkKey(String uploadId, int index, String checksum) {
+        return uploadId + "-" + index + "-" + checksum;
+    }
+
+    private record SpooledChunk(String checksum, long size) {
+    }
+}
@@ -0,0 +1,24 @@
+package com.akmaljon.resourceservice.storage;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+
+public interface BlobStore {
+
+    // Stores the file under the given key. Implementations may move the source file instead of copying it
+    void put(String key, Path source);
+
+    InputStream open(String key);
+
+    InputStream open(String key, long offset, long length);
+
+    // Path of the blob on the local file system, present only when the bytes can be served with zero-copy I/O
+    default Optional<Path> localPath(String key) {
+        return Optional.empty();
+    }
+
+    void delete(String key);
+
+    boolean exists(String key);
+}
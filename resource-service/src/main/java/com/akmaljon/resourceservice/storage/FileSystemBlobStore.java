@@ -0,0 +1,128 @@
+package com.akmaljon.resourceservice.storage;
+
+import com.akmaljon.resourceservice.exception.BlobNotFoundException;
+import com.akmaljon.resourceservice.exception.BlobStorageException;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+public class FileSystemBlobStore implements BlobStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileSystemBlobStore.class);
+
+    private final Path rootDirectory;
+
+    public FileSystemBlobStore(Path rootDirectory) {
+        this.rootDirectory = rootDirectory.toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(this.rootDirectory);
+        } catch (IOException e) {
+            throw new BlobStorageException("Failed to create blob directory " + this.rootDirectory, e);
+        }
+    }
+
+    @Override
+    public void put(String key, Path source) {
+        Path target = resolve(key);
+        try {
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                // Spool directory lives on another file system: copy next to the target first, so readers
+                // never see a partially written blob under the final name
+                copyAtomically(source, target);
+            }
+            logger.debug("Stored blob {} at {}", key, target);
+        } catch (IOException e) {
+            throw new BlobStorageException("Failed to store blob " + key, e);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) {
+        try {
+            return Files.newInputStream(resolve(key));
+        } catch (NoSuchFileException e) {
+            throw new BlobNotFoundException(key, e);
+        } catch (IOException e) {
+            throw new BlobStorageException("Failed to open blob " + key, e);
+        }
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) {
+        try {
+            FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ);
+            try {
+                channel.position(offset);
+                return BoundedInputStream.builder()
+                        .setInputStream(Channels.newInputStream(channel))
+                        .setMaxCount(length)
+                        .get();
+            } catch (IOException | RuntimeException e) {
+                // Nothing owns the channel until the stream is returned
+                try {
+                    channel.close();
+                } catch (IOException closeFailure) {
+                    e.addSuppressed(closeFailure);
+                }
+                throw e;
+            }
+        } catch (NoSuchFileException e) {
+            throw new BlobNotFoundException(key, e);
+        } catch (IOException e) {
+            throw new BlobStorageException("Failed to open blob " + key, e);
+        }
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        Path path = resolve(key);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    @Override
+    public void delete(String key) {
+        try {
+            Files.deleteIfExists(resolve(key));
+        } catch (IOException e) {
+            throw new BlobStorageException("Failed to delete blob " + key, e);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    private void copyAtomically(Path source, Path target) throws IOException {
+        Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".part");
+        try {
+            Files.copy(source, temporary, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    // Keys are spread over two directory levels so that no single directory grows unbounded
+    Path resolve(String key) {
+        if (key.length() < 4 || key.contains("/") || key.contains("\\") || key.contains("..")) {
+            throw new BlobStorageException("Invalid blob key " + key);
+        }
+        return rootDirectory.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+}
@@ -0,0 +1,113 @@
+package com.akmaljon.resourceservice.storage;
+
+import com.akmaljon.resourceservice.exception.BlobNotFoundException;
+import com.akmaljon.resourceservice.exception.BlobStorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+
+public class S3BlobStore implements BlobStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3BlobStore.class);
+
+    private final S3Client s3Client;
+    private final String bucket;
+
+    public S3BlobStore(S3Client s3Client, String bucket) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+    }
+
+    public void createBucketIfMissing() {
+        try {
+            s3Client.headBucket(HeadBucketRequest.builder().bucket(bucket).build());
+        } catch (NoSuchBucketException e) {
+            s3Client.createBucket(CreateBucketRequest.builder().bucket(bucket).build());
+            logger.info("Created blob bucket {}", bucket);
+        }
+    }
+
+    @Override
+    public void put(String key, Path source) {
+        try {
+            // The SDK streams the file from disk, the object is never held in memory
+            s3Client.putObject(PutObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(key)
+                            .build(),
+                    RequestBody.fromFile(source));
+            logger.debug("Stored blob {} in bucket {}", key, bucket);
+        } catch (SdkException e) {
+            throw new BlobStorageException("Failed to store blob " + key, e);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) {
+        try {
+            return s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .build());
+        } catch (NoSuchKeyException e) {
+            throw new BlobNotFoundException(key, e);
+        } catch (SdkException e) {
+            throw new BlobStorageException("Failed to open blob " + key, e);
+        }
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) {
+        try {
+            return s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .range("bytes=" + offset + "-" + (offset + length - 1))
+                    .build());
+        } catch (NoSuchKeyException e) {
+            throw new BlobNotFoundException(key, e);
+        } catch (SdkException e) {
+            throw new BlobStorageException("Failed to open blob " + key, e);
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        try {
+            s3Client.deleteObject(DeleteObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .build());
+        } catch (SdkException e) {
+            throw new BlobStorageException("Failed to delete blob " + key, e);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        try {
+            s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .build());
+            return true;
+        } catch (NoSuchKeyException e) {
+            return false;
+        } catch (SdkException e) {
+            throw new BlobStorageException("Failed to check blob " + key, e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.akmaljon.resourceservice.event;
+
+import com.akmaljon.resourceservice.dto.IdsDto;
+import com.akmaljon.resourceservice.dto.SongBatchItemDto;
+import com.akmaljon.resourceservice.dto.SongMetadataDto;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+@EmbeddedKafka(partitions = ResourceEventPublisherTest.PARTITIONS, topics = ResourceEventPublisherTest.TOPIC)
+class ResourceEventPublisherTest {
+
+    static final int PARTITIONS = 3;
+    static final String TOPIC = "resource-events";
+    private static final Duration SEND_TIMEOUT = Duration.ofSeconds(10);
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private final EmbeddedKafkaBroker broker;
+
+    private DefaultKafkaProducerFactory<String, String> producerFactory;
+    private KafkaTemplate<String, String> kafkaTemplate;
+    private Consumer<String, String> consumer;
+
+    ResourceEventPublisherTest(EmbeddedKafkaBroker broker) {
+        this.broker = broker;
+    }
+
+    @BeforeEach
+    void setUp() {
+        producerFactory = new DefaultKafkaProducerFactory<>(KafkaTestUtils.producerProps(broker),
+                new StringSerializer(), new StringSerializer());
+        kafkaTemplate = new KafkaTemplate<>(producerFactory);
+        consumer = new KafkaConsumer<>(KafkaTestUtils.consumerProps(broker, "publisher-test", false),
+                new StringDeserializer(), new StringDeserializer());
+        broker.consumeFromAnEmbeddedTopic(consumer, TOPIC);
+        // Skip whatever earlier tests left on the topic
+        consumer.seekToEnd(consumer.assignment());
+        consumer.assignment().forEach(consumer::position);
+    }
+
+    @AfterEach
+    void tearDown() {
+        consumer.close();
+        producerFactory.destroy();
+    }
+
+    @Test
+    void deleteFollowsCreateInTheSamePartition() {
+        ResourceEventPublisher publisher = publisher(PARTITIONS);
+        List<Long> ids = LongStream.rangeClosed(1, 20).boxed().toList();
+
+        publisher.publishCreated(ids.stream().map(this::song).toList());
+        publisher.publishDeleted(ids);
+
+        // Every create plus at least one delete; fails once the timeout passes without them
+        List<ConsumerRecord<String, String>> records = new ArrayList<>();
+        KafkaTestUtils.getRecords(consumer, SEND_TIMEOUT, ids.size() + 1).forEach(records::add);
+        // Deletes are sent together, give the rest of them a moment to arrive
+        KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(1)).forEach(records::add);
+
+        Map<Long, ConsumerRecord<String, String>> creates = new HashMap<>();
+        Map<Long, ConsumerRecord<String, String>> deletes = new HashMap<>();
+        int deleteEvents = 0;
+        for (ConsumerRecord<String, String> record : records) {
+            if (isType(record, ResourceEventPublisher.RESOURCE_CREATED)) {
+                long id = objectMapper.readTree(record.value()).get("id").asLong();
+                assertThat(record.key()).isEqualTo(Long.toString(id));
+                creates.put(id, record);
+            } else {
+                deleteEvents++;
+                IdsDto deleted = objectMapper.readValue(record.value(), IdsDto.class);
+                assertThat(record.key()).isEqualTo(deleted.getIds().get(0).toString());
+                deleted.getIds().forEach(id -> deletes.put(id, record));
+            }
+        }
+
+        assertThat(creates).containsOnlyKeys(ids);
+        assertThat(deletes).containsOnlyKeys(ids);
+        assertThat(deleteEvents).isLessThanOrEqualTo(PARTITIONS);
+        for (Long id : ids) {
+            ConsumerRecord<String, String> create = creates.get(id);
+            ConsumerRecord<String, String> delete = deletes.get(id);
+            assertThat(delete.partition()).as("partition of the delete of %d", id).isEqualTo(create.partition());
+            assertThat(delete.offset()).as("offset of the delete of %d", id).isGreaterThan(create.offset());
+        }
+    }
+
+    @Test
+    void refusesToPublishWhenThePartitionCountDiffers() {
+        ResourceEventPublisher publisher = publisher(PARTITIONS + 1);
+
+        assertThatIllegalStateException()
+                .isThrownBy(() -> publisher.publishCreated(List.of(song(1L))))
+                .withMessageContaining("partitions");
+        assertThatIllegalStateException()
+                .isThrownBy(() -> publisher.publishDeleted(List.of(1L)));
+        assertThat(KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(1)).isEmpty()).isTrue();
+    }
+
+    private ResourceEventPublisher publisher(int partitions) {
+        return new ResourceEventPublisher(kafkaTemplate, objectMapper, TOPIC, partitions, SEND_TIMEOUT);
+    }
+
+    private SongBatchItemDto song(Long id) {
+        return new SongBatchItemDto(new SongMetadataDto(id, "Song " + id, "Artist", "Album", "03:30", "2020"),
+                "outbox-" + id);
+    }
+
+    private static boolean isType(ConsumerRecord<String, String> record, String type) {
+        return type.equals(new String(record.headers().lastHeader(ResourceEventPublisher.TYPE_HEADER).value(),
+                StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,220 @@
+package com.akmaljon.resourceservice.metadata;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class Mp3HeaderParserTest {
+
+    // MPEG 1 Layer III, 44.1 kHz, stereo: 1152 samples and 144 * bitrate / 44100 bytes per frame
+    private static final int KBPS_128 = 0x90;
+    private static final int KBPS_160 = 0xA0;
+    private static final int FRAME_128_LENGTH = 417;
+    private static final int SIDE_INFO_END = 4 + 32;
+    private static final double FRAME_SECONDS = 1152 / 44100.0;
+
+    private final Mp3HeaderParser parser = new Mp3HeaderParser();
+
+    @Test
+    void constantBitrateDurationFollowsFromTheAudioLength() throws IOException {
+        byte[] file = concat(frames(KBPS_128, 100), id3v1("Title", "Artist", "Album", "1999"));
+
+        Mp3Headers headers = parse(file);
+
+        assertThat(headers).isNotNull();
+        assertThat(headers.durationSeconds()).isCloseTo(100 * FRAME_128_LENGTH * 8 / 128_000.0, within(1e-9));
+        assertThat(headers.title()).isEqualTo("Title");
+        assertThat(headers.artist()).isEqualTo("Artist");
+        assertThat(headers.album()).isEqualTo("Album");
+        assertThat(headers.year()).isEqualTo("1999");
+    }
+
+    @Test
+    void id3v2TagIsSkippedAndItsFramesWinOverId3v1() throws IOException {
+        byte[] tag = id3v2(3, 0, textFrames(false, "TIT2", "Tagged", "TPE1", "Someone", "TALB", "Record"), 32);
+        byte[] file = concat(tag, frames(KBPS_128, 100), id3v1("Old title", "", "", "2001"));
+
+        Mp3Headers headers = parse(file);
+
+        assertThat(headers).isNotNull();
+        assertThat(headers.title()).isEqualTo("Tagged");
+        assertThat(headers.artist()).isEqualTo("Someone");
+        assertThat(headers.album()).isEqualTo("Record");
+        assertThat(headers.year()).isEqualTo("2001");
+        assertThat(headers.durationSeconds()).isCloseTo(100 * FRAME_128_LENGTH * 8 / 128_000.0, within(1e-9));
+    }
+
+    @Test
+    void id3v24FooterIsSkippedBeforeTheAudio() throws IOException {
+        byte[] tag = id3v2(4, 0x10, textFrames(true, "TIT2", "Footer", "TDRC", "2024"), 0);
+        byte[] footer = Arrays.copyOf(tag, 10);
+        footer[0] = '3';
+        footer[1] = 'D';
+        footer[2] = 'I';
+        byte[] file = concat(tag, footer, frames(KBPS_128, 100));
+
+        Mp3Headers headers = parse(file);
+
+        assertThat(headers).isNotNull();
+        assertThat(headers.title()).isEqualTo("Footer");
+        assertThat(headers.year()).isEqualTo("2024");
+        assertThat(headers.durationSeconds()).isCloseTo(100 * FRAME_128_LENGTH * 8 / 128_000.0, within(1e-9));
+    }
+
+    @Test
+    void xingFrameCountGivesTheDuration() throws IOException {
+        byte[] first = frame(KBPS_128);
+        write(first, SIDE_INFO_END, "Xing".getBytes(StandardCharsets.ISO_8859_1));
+        writeInt(first, SIDE_INFO_END + 4, 0x1);
+        writeInt(first, SIDE_INFO_END + 8, 5000);
+        byte[] file = concat(first, variableFrames(50));
+
+        Mp3Headers headers = parse(file);
+
+        assertThat(headers).isNotNull();
+        assertThat(headers.durationSeconds()).isCloseTo(5000 * FRAME_SECONDS, within(1e-9));
+    }
+
+    @Test
+    void vbriFrameCountGivesTheDuration() throws IOException {
+        byte[] first = frame(KBPS_128);
+        write(first, SIDE_INFO_END, "VBRI".getBytes(StandardCharsets.ISO_8859_1));
+        writeInt(first, SIDE_INFO_END + 14, 3000);
+        byte[] file = concat(first, variableFrames(50));
+
+        Mp3Headers headers = parse(file);
+
+        assertThat(headers).isNotNull();
+        assertThat(headers.durationSeconds()).isCloseTo(3000 * FRAME_SECONDS, within(1e-9));
+    }
+
+    @Test
+    void variableBitrateWithoutHeaderIsLeftToTheFullParser() throws IOException {
+        // The first frames agree, so only a longer walk tells this apart from constant bitrate
+        byte[] file = concat(frames(KBPS_128, 4), frames(KBPS_160, 1), frames(KBPS_128, 50));
+
+        assertThat(parse(file)).isNull();
+    }
+
+    @Test
+    void junkBeforeTheFirstFrameIsSkipped() throws IOException {
+        byte[] junk = new byte[600];
+        Arrays.fill(junk, (byte) 0x55);
+        // A lone sync word whose frame is not followed by another header
+        write(junk, 10, new byte[]{(byte) 0xFF, (byte) 0xFB, (byte) KBPS_128, 0x00});
+        byte[] file = concat(junk, frames(KBPS_128, 100));
+
+        Mp3Headers headers = parse(file);
+
+        assertThat(headers).isNotNull();
+        assertThat(headers.durationSeconds()).isCloseTo(100 * FRAME_128_LENGTH * 8 / 128_000.0, within(1e-9));
+    }
+
+    @Test
+    void truncatedInputIsUndecided() throws IOException {
+        // Tag size runs past the end of the file
+        byte[] tag = id3v2(3, 0, textFrames(false, "TIT2", "Cut"), 0);
+        assertThat(parse(Arrays.copyOf(tag, tag.length - 4))).isNull();
+
+        // A single frame, no second header to confirm the sync
+        assertThat(parse(frames(KBPS_128, 1))).isNull();
+
+        // Shorter than an ID3v2 header
+        assertThat(parse(new byte[]{'I', 'D', '3'})).isNull();
+    }
+
+    private Mp3Headers parse(byte[] file) throws IOException {
+        return parser.parse(file.length,
+                (offset, length) -> new ByteArrayInputStream(file, (int) offset, (int) length));
+    }
+
+    private static byte[] frame(int bitrateByte) {
+        int bitrate = bitrateByte == KBPS_160 ? 160 : 128;
+        byte[] frame = new byte[144 * bitrate * 1000 / 44100];
+        write(frame, 0, new byte[]{(byte) 0xFF, (byte) 0xFB, (byte) bitrateByte, 0x00});
+        return frame;
+    }
+
+    private static byte[] frames(int bitrateByte, int count) {
+        byte[][] frames = new byte[count][];
+        Arrays.fill(frames, frame(bitrateByte));
+        return concat(frames);
+    }
+
+    private static byte[] variableFrames(int count) {
+        byte[][] frames = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            frames[i] = frame(i % 2 == 0 ? KBPS_128 : KBPS_160);
+        }
+        return concat(frames);
+    }
+
+    // Alternating frame IDs and values, each one a Latin-1 text frame
+    private static byte[] textFrames(boolean syncsafeSizes, String... idsAndValues) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < idsAndValues.length; i += 2) {
+            byte[] value = idsAndValues[i + 1].getBytes(StandardCharsets.ISO_8859_1);
+            byte[] header = new byte[10];
+            write(header, 0, idsAndValues[i].getBytes(StandardCharsets.ISO_8859_1));
+            int size = value.length + 1;
+            if (syncsafeSizes) {
+                writeSyncsafe(header, 4, size);
+            } else {
+                writeInt(header, 4, size);
+            }
+            out.writeBytes(header);
+            out.write(0);
+            out.writeBytes(value);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] id3v2(int majorVersion, int flags, byte[] frames, int padding) {
+        byte[] header = {'I', 'D', '3', (byte) majorVersion, 0, (byte) flags, 0, 0, 0, 0};
+        writeSyncsafe(header, 6, frames.length + padding);
+        return concat(header, frames, new byte[padding]);
+    }
+
+    private static byte[] id3v1(String title, String artist, String album, String year) {
+        byte[] tag = new byte[128];
+        write(tag, 0, "TAG".getBytes(StandardCharsets.ISO_8859_1));
+        write(tag, 3, title.getBytes(StandardCharsets.ISO_8859_1));
+        write(tag, 33, artist.getBytes(StandardCharsets.ISO_8859_1));
+        write(tag, 63, album.getBytes(StandardCharsets.ISO_8859_1));
+        write(tag, 93, year.getBytes(StandardCharsets.ISO_8859_1));
+        return tag;
+    }
+
+    private static void write(byte[] target, int offset, byte[] bytes) {
+        System.arraycopy(bytes, 0, target, offset, bytes.length);
+    }
+
+    private static void writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    private static void writeSyncsafe(byte[] target, int offset, int value) {
+        target[offset] = (byte) ((value >>> 21) & 0x7F);
+        target[offset + 1] = (byte) ((value >>> 14) & 0x7F);
+        target[offset + 2] = (byte) ((value >>> 7) & 0x7F);
+        target[offset + 3] = (byte) (value & 0x7F);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
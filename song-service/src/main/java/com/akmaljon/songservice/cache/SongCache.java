@@ -0,0 +1,116 @@
+package com.akmaljon.songservice.cache;
+
+import com.akmaljon.songservice.dto.SongDto;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+// Bounded read-through cache for single song lookups. Misses are not cached, so a song created after a 404
+// is visible right away. Entries expire after a TTL, which also caps staleness when cross-instance invalidation is off
+@Component
+public class SongCache {
+
+    public static final String INVALIDATION_CHANNEL = "song_cache_invalidation";
+    // NOTIFY payloads must stay below 8000 bytes
+    private static final int MAX_NOTIFY_PAYLOAD_LENGTH = 7000;
+
+    private final AsyncCache<Long, SongDto> cache;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean crossInstanceInvalidation;
+
+    public SongCache(JdbcTemplate jdbcTemplate,
+                     MeterRegistry meterRegistry,
+                     @Value("${song.cache.maximum-size}") long maximumSize,
+                     @Value("${song.cache.expire-after-write}") Duration expireAfterWrite,
+                     @Value("${song.cache.cross-instance-invalidation}") boolean crossInstanceInvalidation) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.crossInstanceInvalidation = crossInstanceInvalidation;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                // Loads run outside the cache's internal lock: a JDBC call inside the synchronous
+                // compute would pin the carrier thread of a virtual thread
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .buildAsync();
+
+        // Publishes cache.gets{result=hit|miss}, cache.evictions and cache.size under cache=songs
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "songs");
+    }
+
+    // The loader may return null for a missing song, in which case nothing is cached
+    public SongDto get(Long id, Function<Long, SongDto> loader) {
+        try {
+            return cache.get(id, loader).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Drops the entries once the surrounding transaction commits, so a concurrent read cannot
+    // reload a row the transaction is about to delete. Other instances are told through NOTIFY,
+    // which Postgres also delivers only on commit
+    public void invalidateAfterCommit(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        if (crossInstanceInvalidation) {
+            notifyOtherInstances(ids);
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.synchronous().invalidateAll(ids);
+                }
+            });
+        } else {
+            cache.synchronous().invalidateAll(ids);
+        }
+    }
+
+    public void invalidate(List<Long> ids) {
+        cache.synchronous().invalidateAll(ids);
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    private void notifyOtherInstances(List<Long> ids) {
+        StringBuilder payload = new StringBuilder();
+        for (Long id : ids) {
+            String value = id.toString();
+            if (payload.length() + value.length() + 1 > MAX_NOTIFY_PAYLOAD_LENGTH) {
+                sendNotification(payload.toString());
+                payload.setLength(0);
+            }
+            if (!payload.isEmpty()) {
+                payload.append(',');
+            }
+            payload.append(value);
+        }
+        sendNotification(payload.toString());
+    }
+
+    private void sendNotification(String payload) {
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", resultSet -> null, INVALIDATION_CHANNEL, payload);
+    }
+}
@@ -0,0 +1,110 @@
+package com.akmaljon.songservice.cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+// Applies invalidations published by other song-service instances. LISTEN holds its connection for the life of
+// the instance, so it opens its own instead of taking one out of the request pool. Whenever that connection is
+// lost the whole cache is dropped, because notifications sent meanwhile are gone
+@Component
+@ConditionalOnProperty(name = "song.cache.cross-instance-invalidation", havingValue = "true")
+public class SongCacheInvalidationListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(SongCacheInvalidationListener.class);
+    private static final int POLL_TIMEOUT_MILLIS = 1000;
+    private static final long RECONNECT_DELAY_MILLIS = 5000;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final SongCache songCache;
+    private final Thread listenerThread;
+    private volatile boolean running = true;
+
+    public SongCacheInvalidationListener(@Value("${spring.datasource.url}") String url,
+                                         @Value("${spring.datasource.username}") String username,
+                                         @Value("${spring.datasource.password}") String password,
+                                         SongCache songCache) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.songCache = songCache;
+        this.listenerThread = new Thread(this::listen, "song-cache-invalidation");
+        this.listenerThread.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        listenerThread.interrupt();
+        listenerThread.join(POLL_TIMEOUT_MILLIS * 2L);
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + SongCache.INVALIDATION_CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                logger.info("Listening for song cache invalidations on channel {}", SongCache.INVALIDATION_CHANNEL);
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            songCache.invalidate(parseIds(notification.getParameter()));
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                logger.warn("Song cache invalidation listener disconnected: {}", e.getMessage());
+                songCache.invalidateAll();
+                sleepBeforeReconnect();
+            }
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private List<Long> parseIds(String payload) {
+        List<Long> ids = new ArrayList<>();
+        for (String part : payload.split(",")) {
+            try {
+                ids.add(Long.parseLong(part));
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring malformed song cache invalidation entry '{}'", part);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,25 @@
+package com.akmaljon.songservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "song.events.enabled", havingValue = "true")
+public class EventConfig {
+
+    // A failed batch is a failed write, usually the database being unavailable. It is retried with backoff
+    // until it goes through instead of being dropped; the consumer keeps polling meanwhile so it stays in the group
+    @Bean
+    public DefaultErrorHandler resourceEventErrorHandler(@Value("${song.events.retry.initial-backoff}") Duration initialBackoff,
+                                                         @Value("${song.events.retry.max-backoff}") Duration maxBackoff) {
+        ExponentialBackOff backOff = new ExponentialBackOff(initialBackoff.toMillis(), 2);
+        backOff.setMaxInterval(maxBackoff.toMillis());
+        return new DefaultErrorHandler(backOff);
+    }
+}
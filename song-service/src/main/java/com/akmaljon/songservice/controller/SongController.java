@@ -1,11 +1,16 @@
 package com.akmaljon.songservice.controller;
 
+import com.akmaljon.songservice.dto.IdsDto;
 import com.akmaljon.songservice.dto.SongDto;
+import com.akmaljon.songservice.dto.SongPageDto;
+import com.akmaljon.songservice.dto.SongQueryDto;
 import com.akmaljon.songservice.service.SongService;
 import jakarta.validation.Valid;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -20,11 +25,38 @@ public class SongController {
     }
 
     @PostMapping
-    public ResponseEntity<Map<String, Long>> createSong(@Valid @RequestBody SongDto songDto) {
-        Map<String, Long> id = songService.createSong(songDto);
+    public ResponseEntity<Map<String, Long>> createSong(@Valid @RequestBody SongDto songDto,
+                                                        @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        Map<String, Long> id = songService.createSong(songDto, idempotencyKey);
         return ResponseEntity.ok(id);
     }
 
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<Map<String, Long>> createSongs(InputStream body) {
+        Map<String, Long> counts = songService.createSongs(body);
+        return ResponseEntity.ok(counts);
+    }
+
+    @GetMapping
+    public ResponseEntity<SongPageDto> listSongs(@Valid SongQueryDto query) {
+        SongPageDto page = songService.listSongs(query);
+        return ResponseEntity.ok(page);
+    }
+
+    // Used by resource-service's reconciler to find ID ranges that differ between the two services
+    @GetMapping("/digest")
+    public ResponseEntity<Map<String, Long>> digestIdRange(@RequestParam long idFrom, @RequestParam long idTo) {
+        return ResponseEntity.ok(songService.digestIdRange(idFrom, idTo));
+    }
+
+    // IDs only, for the reconciler to tell which songs of a differing range are missing or orphaned
+    @GetMapping("/ids")
+    public ResponseEntity<Map<String, List<Long>>> listSongIds(@RequestParam long idFrom,
+                                                               @RequestParam long idTo,
+                                                               @RequestParam(defaultValue = "10000") int limit) {
+        return ResponseEntity.ok(songService.listSongIds(idFrom, idTo, limit));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<SongDto> getSong(@PathVariable String id) {
         SongDto songDto = songService.getSong(id);
@@ -36,5 +68,12 @@ public class SongController {
         Map<String, List<Long>> deletedIds = songService.deleteSongs(csvIds);
         return ResponseEntity.ok(deletedIds);
     }
+
+    // JSON body variant for bulk cleanups that do not fit into the CSV query parameter
+    @DeleteMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, List<Long>>> deleteSongs(@Valid @RequestBody IdsDto idsDto) {
+        Map<String, List<Long>> deletedIds = songService.deleteSongs(idsDto.getIds());
+        return ResponseEntity.ok(deletedIds);
+    }
 }
 
@@ -0,0 +1,20 @@
+package com.akmaljon.songservice.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdsDto {
+
+    @NotNull(message = "IDs are required")
+    @Size(min = 1, max = 10000, message = "Between 1 and 10000 IDs are allowed per request")
+    private List<@NotNull(message = "ID is required") @Positive(message = "Only positive integers are allowed") Long> ids;
+}
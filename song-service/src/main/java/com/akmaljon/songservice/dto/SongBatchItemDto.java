@@ -0,0 +1,17 @@
+package com.akmaljon.songservice.dto;
+
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+// An item of POST /songs/batch or of a resource created event. The optional key is recorded for the song
+// the item creates, like the Idempotency-Key header of POST /songs
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class SongBatchItemDto extends SongDto {
+
+    @Size(min = 1, max = 255, message = "Idempotency key must be between 1 and 255 characters")
+    private String idempotencyKey;
+}
@@ -0,0 +1,17 @@
+package com.akmaljon.songservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SongPageDto {
+
+    private List<SongDto> songs;
+    // Opaque position after the last song of this page, null on the last page
+    private String nextCursor;
+}
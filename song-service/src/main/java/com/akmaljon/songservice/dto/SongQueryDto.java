@@ -0,0 +1,59 @@
+package com.akmaljon.songservice.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Query parameters of GET /songs; every filter is optional
+@Data
+@NoArgsConstructor
+public class SongQueryDto {
+
+    // Inclusive ID range, lets resource-service fetch the songs of a range of resources page by page
+    @Positive(message = "ID range bounds must be positive integers")
+    private Long idFrom;
+
+    @Positive(message = "ID range bounds must be positive integers")
+    private Long idTo;
+
+    // CSV list of IDs, lets resource-service fetch the songs of exactly one page of resources
+    @Size(max = 100, message = "At most 100 IDs can be listed")
+    private List<@Positive(message = "IDs must be positive integers") Long> id;
+
+    @Size(max = 100, message = "Artist must be at most 100 characters")
+    private String artist;
+
+    @Size(max = 100, message = "Album must be at most 100 characters")
+    private String album;
+
+    // Case-insensitive prefix of the song name
+    @Size(max = 100, message = "Name must be at most 100 characters")
+    private String name;
+
+    @Pattern(regexp = "^(19\\d{2}|20\\d{2})$", message = "Year must be between 1900 and 2099")
+    private String year;
+
+    @Pattern(regexp = "^(19\\d{2}|20\\d{2})$", message = "Year must be between 1900 and 2099")
+    private String yearFrom;
+
+    @Pattern(regexp = "^(19\\d{2}|20\\d{2})$", message = "Year must be between 1900 and 2099")
+    private String yearTo;
+
+    @Pattern(regexp = "^\\d{2}:[0-5]\\d$", message = "Duration must be in mm:ss format with leading zeros")
+    private String minDuration;
+
+    @Pattern(regexp = "^\\d{2}:[0-5]\\d$", message = "Duration must be in mm:ss format with leading zeros")
+    private String maxDuration;
+
+    private String cursor;
+
+    @Min(value = 1, message = "Limit must be between 1 and 100")
+    @Max(value = 100, message = "Limit must be between 1 and 100")
+    private int limit = 20;
+}
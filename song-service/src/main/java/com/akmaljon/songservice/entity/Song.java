@@ -24,10 +24,11 @@ public class Song {
     @Column(nullable = false, length = 100)
     private String album;
 
-    @Column(nullable = false, length = 5)
-    private String duration;
+    // Seconds; exposed as "mm:ss" by the API
+    @Column(nullable = false)
+    private int duration;
 
-    @Column(nullable = false, length = 4)
-    private String year;
+    @Column(nullable = false)
+    private short year;
 }
 
@@ -0,0 +1,113 @@
+package com.akmaljon.songservice.event;
+
+import com.akmaljon.songservice.dto.IdsDto;
+import com.akmaljon.songservice.dto.SongBatchItemDto;
+import com.akmaljon.songservice.service.SongService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.Validator;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Consumes the events resource-service publishes when resource.song-sync.mode=events. Each poll is applied as
+// a few batched writes: creates are collected and inserted together, a delete first flushes the creates before
+// it so per-resource order is kept. Both writes are idempotent, so a batch redelivered after a failure is
+// applied again as a whole. Events that can never be applied are logged and skipped
+@Component
+@ConditionalOnProperty(name = "song.events.enabled", havingValue = "true")
+public class ResourceEventListener {
+
+    private static final String TYPE_HEADER = "event-type";
+    private static final String RESOURCE_CREATED = "ResourceCreated";
+    private static final String RESOURCES_DELETED = "ResourcesDeleted";
+
+    private static final Logger logger = LoggerFactory.getLogger(ResourceEventListener.class);
+
+    private final SongService songService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final MeterRegistry meterRegistry;
+
+    public ResourceEventListener(SongService songService,
+                                 ObjectMapper objectMapper,
+                                 Validator validator,
+                                 MeterRegistry meterRegistry) {
+        this.songService = songService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @KafkaListener(topics = "${song.events.topic}", batch = "true")
+    public void onEvents(List<ConsumerRecord<String, String>> records) {
+        List<SongBatchItemDto> created = new ArrayList<>();
+        for (ConsumerRecord<String, String> record : records) {
+            String type = header(record, TYPE_HEADER);
+            if (RESOURCE_CREATED.equals(type)) {
+                SongBatchItemDto song = read(record, SongBatchItemDto.class);
+                if (song != null && validator.validate(song).isEmpty()) {
+                    created.add(song);
+                } else {
+                    skip(record, "invalid song");
+                }
+            } else if (RESOURCES_DELETED.equals(type)) {
+                IdsDto ids = read(record, IdsDto.class);
+                if (ids != null && ids.getIds() != null && !ids.getIds().isEmpty()) {
+                    flushCreated(created);
+                    songService.deleteSongs(ids.getIds());
+                    count(RESOURCES_DELETED, ids.getIds().size());
+                } else {
+                    skip(record, "invalid ID list");
+                }
+            } else {
+                skip(record, "unknown event type " + type);
+            }
+        }
+        flushCreated(created);
+    }
+
+    private void flushCreated(List<SongBatchItemDto> created) {
+        if (created.isEmpty()) {
+            return;
+        }
+        long inserted = songService.saveSongs(created);
+        logger.info("Applied {} resource created events, created {} songs", created.size(), inserted);
+        count(RESOURCE_CREATED, created.size());
+        created.clear();
+    }
+
+    private <T> T read(ConsumerRecord<String, String> record, Class<T> type) {
+        if (record.value() == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(record.value(), type);
+        } catch (JacksonException e) {
+            return null;
+        }
+    }
+
+    private void skip(ConsumerRecord<String, String> record, String reason) {
+        logger.warn("Skipping resource event at {}-{}@{}: {}", record.topic(), record.partition(), record.offset(), reason);
+        count("skipped", 1);
+    }
+
+    private void count(String type, int amount) {
+        meterRegistry.counter("song.events.processed", "type", type).increment(amount);
+    }
+
+    private static String header(ConsumerRecord<String, String> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+}
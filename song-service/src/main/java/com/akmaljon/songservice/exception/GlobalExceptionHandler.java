@@ -1,8 +1,11 @@
 package com.akmaljon.songservice.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.HttpMediaTypeNotSupportedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -39,6 +42,33 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
     }
 
+    @ExceptionHandler(InvalidIdempotencyKeyException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidIdempotencyKey(InvalidIdempotencyKeyException ex) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("errorMessage", ex.getMessage());
+        errorResponse.put("errorCode", "400");
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+    }
+
+    @ExceptionHandler(InvalidQueryParameterException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidQueryParameter(InvalidQueryParameterException ex) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("errorMessage", ex.getMessage());
+        errorResponse.put("errorCode", "400");
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+    }
+
+    @ExceptionHandler(InvalidBatchException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidBatch(InvalidBatchException ex) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("errorMessage", ex.getMessage());
+        if (!ex.getDetails().isEmpty()) {
+            errorResponse.put("details", ex.getDetails());
+        }
+        errorResponse.put("errorCode", "400");
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+    }
+
     @ExceptionHandler(MethodArgumentTypeMismatchException.class)
     public ResponseEntity<Map<String, Object>> handleTypeMismatch(MethodArgumentTypeMismatchException ex) {
         Map<String, Object> errorResponse = new HashMap<>();
@@ -81,6 +111,17 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
     }
 
+    // Connection pool exhausted or database unreachable: the request can be retried shortly
+    @ExceptionHandler({CannotCreateTransactionException.class, CannotGetJdbcConnectionException.class})
+    public ResponseEntity<Map<String, Object>> handleDatabaseUnavailable(Exception ex) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("errorMessage", "Service is temporarily unavailable, please retry");
+        errorResponse.put("errorCode", "503");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(errorResponse);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleGenericException(Exception ex) {
         Map<String, Object> errorResponse = new HashMap<>();
@@ -0,0 +1,17 @@
+package com.akmaljon.songservice.exception;
+
+import java.util.Map;
+
+public class InvalidBatchException extends RuntimeException {
+
+    private final Map<String, String> details;
+
+    public InvalidBatchException(String message, Map<String, String> details) {
+        super(message);
+        this.details = details;
+    }
+
+    public Map<String, String> getDetails() {
+        return details;
+    }
+}
@@ -0,0 +1,8 @@
+package com.akmaljon.songservice.exception;
+
+public class InvalidIdempotencyKeyException extends RuntimeException {
+
+    public InvalidIdempotencyKeyException(int maxLength) {
+        super("Idempotency-Key must be between 1 and " + maxLength + " characters");
+    }
+}
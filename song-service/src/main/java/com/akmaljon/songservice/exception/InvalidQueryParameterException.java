@@ -0,0 +1,8 @@
+package com.akmaljon.songservice.exception;
+
+public class InvalidQueryParameterException extends RuntimeException {
+
+    public InvalidQueryParameterException(String message) {
+        super(message);
+    }
+}
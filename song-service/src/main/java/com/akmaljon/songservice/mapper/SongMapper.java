@@ -0,0 +1,59 @@
+package com.akmaljon.songservice.mapper;
+
+import com.akmaljon.songservice.dto.SongDto;
+import com.akmaljon.songservice.entity.Song;
+
+// Songs are stored with numeric duration and year, the API keeps exposing them as "mm:ss" and "yyyy" strings
+public final class SongMapper {
+
+    private SongMapper() {
+    }
+
+    public static SongDto toDto(Song song) {
+        return new SongDto(
+                song.getId(),
+                song.getName(),
+                song.getArtist(),
+                song.getAlbum(),
+                formatDuration(song.getDuration()),
+                formatYear(song.getYear())
+        );
+    }
+
+    // Expects a DTO that already passed validation
+    public static Song toEntity(SongDto songDto) {
+        return new Song(
+                songDto.getId(),
+                songDto.getName(),
+                songDto.getArtist(),
+                songDto.getAlbum(),
+                parseDuration(songDto.getDuration()),
+                parseYear(songDto.getYear())
+        );
+    }
+
+    // "mm:ss" with two-digit minutes, as validated on SongDto
+    public static int parseDuration(String duration) {
+        int separator = duration.indexOf(':');
+        return Integer.parseInt(duration, 0, separator, 10) * 60
+                + Integer.parseInt(duration, separator + 1, duration.length(), 10);
+    }
+
+    // Minutes never exceed 99, SongDto only accepts two-digit minutes
+    public static String formatDuration(int seconds) {
+        int minutes = seconds / 60;
+        int remainder = seconds % 60;
+        return new String(new char[]{
+                (char) ('0' + minutes / 10), (char) ('0' + minutes % 10), ':',
+                (char) ('0' + remainder / 10), (char) ('0' + remainder % 10)
+        });
+    }
+
+    public static short parseYear(String year) {
+        return Short.parseShort(year);
+    }
+
+    public static String formatYear(short year) {
+        return Short.toString(year);
+    }
+}
@@ -0,0 +1,6 @@
+package com.akmaljon.songservice.repository;
+
+// Row count and XOR of the hashed IDs in a range. Both sides compute it the same way in Postgres, so two
+// ranges holding the same IDs always match and a difference almost always changes the digest
+public record IdRangeDigest(long count, long digest) {
+}
@@ -0,0 +1,6 @@
+package com.akmaljon.songservice.repository;
+
+// Keyset position: the last song's ID, plus the key it was ordered by. The name is kept as stored and lower-cased
+// by the query, with the same expression the rows are ordered by; value is the year or duration in seconds
+public record SongCursor(String name, Integer value, long id) {
+}
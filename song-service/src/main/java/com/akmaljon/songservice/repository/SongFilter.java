@@ -0,0 +1,26 @@
+package com.akmaljon.songservice.repository;
+
+import java.util.List;
+
+// Null fields do not filter; ranges are inclusive, durations in seconds, namePrefix matches case-insensitively
+public record SongFilter(List<Long> ids, Long idFrom, Long idTo, String artist, String album, Short yearFrom, Short yearTo,
+                         Integer minDuration, Integer maxDuration, String namePrefix) {
+
+    // The index that narrows the listing the most decides the order. ID lookups and artist/album equality already
+    // seek on (filter, id); a year or duration range only stays a range scan when ordered by that column first
+    public SongOrder order() {
+        if (namePrefix != null) {
+            return SongOrder.NAME;
+        }
+        if (ids != null || idFrom != null || idTo != null || artist != null || album != null) {
+            return SongOrder.ID;
+        }
+        if (yearFrom != null || yearTo != null) {
+            return SongOrder.YEAR;
+        }
+        if (minDuration != null || maxDuration != null) {
+            return SongOrder.DURATION;
+        }
+        return SongOrder.ID;
+    }
+}
@@ -0,0 +1,9 @@
+package com.akmaljon.songservice.repository;
+
+// Keyset order of a listing. Each one matches an index of (key, id), so a page is a range scan of the page size
+public enum SongOrder {
+    ID,
+    NAME,
+    YEAR,
+    DURATION
+}
@@ -0,0 +1,37 @@
+package com.akmaljon.songservice.repository;
+
+import com.akmaljon.songservice.dto.SongDto;
+import com.akmaljon.songservice.entity.Song;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface SongRepositoryCustom {
+
+    // One INSERT ... ON CONFLICT DO NOTHING RETURNING round-trip; false when a song with this ID already exists.
+    // A non-null idempotency key is recorded in the same statement, only if the song was inserted
+    boolean insertIfAbsent(Song song, String idempotencyKey);
+
+    // True when the key was recorded by an earlier create of this very song
+    boolean isIdempotencyKeyRecorded(String idempotencyKey, Long songId);
+
+    int deleteIdempotencyKeysCreatedBefore(Instant cutoff);
+
+    // One INSERT ... SELECT FROM unnest round-trip for the whole list. Returns the number of songs actually
+    // inserted, rows whose ID already exists are skipped. idempotencyKeys runs parallel to songs; non-null keys
+    // are recorded in the same statement for the songs that were inserted
+    int insertIgnoringConflicts(List<Song> songs, List<String> idempotencyKeys);
+
+    // Deletes every matching row in one statement and returns the IDs that actually existed
+    List<Long> deleteAllByIdReturningIds(List<Long> ids);
+
+    // Keyset page straight into DTOs, without entity hydration. Ordered as filter.order() says, by ID or by
+    // name, year or duration then ID, so every page costs an index range scan of the page size
+    List<SongDto> findPage(SongFilter filter, SongCursor after, int limit);
+
+    // Ascending IDs of the inclusive range, at most limit of them; read from the primary key index alone
+    List<Long> findIdsInRange(long idFrom, long idTo, int limit);
+
+    // Answered from the primary key index alone, lets resource-service compare ID ranges without listing them
+    IdRangeDigest digestIdRange(long idFrom, long idTo);
+}
@@ -0,0 +1,231 @@
+package com.akmaljon.songservice.repository;
+
+import com.akmaljon.songservice.dto.SongDto;
+import com.akmaljon.songservice.entity.Song;
+import com.akmaljon.songservice.mapper.SongMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class SongRepositoryImpl implements SongRepositoryCustom {
+
+    private static final String INSERT_BATCH_WITH_IDEMPOTENCY_KEYS_SQL =
+            "WITH input AS (SELECT * FROM unnest(?, ?, ?, ?, ?, ?, ?) " +
+                    "AS t (id, name, artist, album, duration, year, idempotency_key)), " +
+                    "inserted AS (INSERT INTO songs (id, name, artist, album, duration, year) " +
+                    "SELECT id, name, artist, album, duration, year FROM input ON CONFLICT (id) DO NOTHING RETURNING id), " +
+                    "recorded AS (INSERT INTO song_idempotency_keys (idempotency_key, song_id, created_at) " +
+                    "SELECT input.idempotency_key, inserted.id, now() FROM inserted JOIN input ON input.id = inserted.id " +
+                    "WHERE input.idempotency_key IS NOT NULL ON CONFLICT (idempotency_key) DO NOTHING) " +
+                    "SELECT count(*) FROM inserted";
+
+    private static final String INSERT_RETURNING_ID_SQL =
+            "INSERT INTO songs (id, name, artist, album, duration, year) VALUES (?, ?, ?, ?, ?, ?) " +
+                    "ON CONFLICT (id) DO NOTHING RETURNING id";
+
+    private static final String INSERT_WITH_IDEMPOTENCY_KEY_SQL =
+            "WITH inserted AS (" + INSERT_RETURNING_ID_SQL + "), " +
+                    "recorded AS (INSERT INTO song_idempotency_keys (idempotency_key, song_id, created_at) " +
+                    "SELECT ?, id, now() FROM inserted ON CONFLICT (idempotency_key) DO NOTHING) " +
+                    "SELECT id FROM inserted";
+
+    private static final String DELETE_RETURNING_IDS_SQL = "DELETE FROM songs WHERE id = ANY (?) RETURNING id";
+
+    private static final String SELECT_IDS_IN_RANGE_SQL = "SELECT id FROM songs WHERE id >= ? AND id <= ? ORDER BY id LIMIT ?";
+
+    private static final String DIGEST_ID_RANGE_SQL =
+            "SELECT count(*), coalesce(bit_xor(hashtextextended(id::text, 0)), 0) FROM songs WHERE id >= ? AND id <= ?";
+
+    private static final String SELECT_SONG_DTO_SQL = "SELECT id, name, artist, album, duration, year FROM songs WHERE true";
+    // C collation lets the same btree index serve LIKE 'prefix%' and the (name, id) keyset comparison.
+    // Values compared against it go through lower() as well, never through Java's case mapping
+    private static final String NAME_KEY = "lower(name) COLLATE \"C\"";
+    private static final String NAME_KEY_PARAMETER = "lower(?::text) COLLATE \"C\"";
+
+    private static final RowMapper<SongDto> SONG_DTO_ROW_MAPPER = (resultSet, rowNum) -> new SongDto(
+            resultSet.getLong("id"),
+            resultSet.getString("name"),
+            resultSet.getString("artist"),
+            resultSet.getString("album"),
+            SongMapper.formatDuration(resultSet.getInt("duration")),
+            SongMapper.formatYear(resultSet.getShort("year"))
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SongRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public boolean insertIfAbsent(Song song, String idempotencyKey) {
+        String sql = idempotencyKey == null ? INSERT_RETURNING_ID_SQL : INSERT_WITH_IDEMPOTENCY_KEY_SQL;
+        List<Long> inserted = jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setLong(1, song.getId());
+            statement.setString(2, song.getName());
+            statement.setString(3, song.getArtist());
+            statement.setString(4, song.getAlbum());
+            statement.setInt(5, song.getDuration());
+            statement.setShort(6, song.getYear());
+            if (idempotencyKey != null) {
+                statement.setString(7, idempotencyKey);
+            }
+            return statement;
+        }, (resultSet, rowNum) -> resultSet.getLong(1));
+        return !inserted.isEmpty();
+    }
+
+    @Override
+    public boolean isIdempotencyKeyRecorded(String idempotencyKey, Long songId) {
+        List<Integer> found = jdbcTemplate.query(
+                "SELECT 1 FROM song_idempotency_keys WHERE idempotency_key = ? AND song_id = ?",
+                (resultSet, rowNum) -> 1, idempotencyKey, songId);
+        return !found.isEmpty();
+    }
+
+    @Override
+    public int deleteIdempotencyKeysCreatedBefore(Instant cutoff) {
+        return jdbcTemplate.update("DELETE FROM song_idempotency_keys WHERE created_at < ?", Timestamp.from(cutoff));
+    }
+
+    @Override
+    public int insertIgnoringConflicts(List<Song> songs, List<String> idempotencyKeys) {
+        Long[] ids = new Long[songs.size()];
+        String[] names = new String[songs.size()];
+        String[] artists = new String[songs.size()];
+        String[] albums = new String[songs.size()];
+        Integer[] durations = new Integer[songs.size()];
+        Short[] years = new Short[songs.size()];
+        for (int i = 0; i < songs.size(); i++) {
+            Song song = songs.get(i);
+            ids[i] = song.getId();
+            names[i] = song.getName();
+            artists[i] = song.getArtist();
+            albums[i] = song.getAlbum();
+            durations[i] = song.getDuration();
+            years[i] = song.getYear();
+        }
+
+        Long inserted = jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_BATCH_WITH_IDEMPOTENCY_KEYS_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", ids));
+            statement.setArray(2, connection.createArrayOf("varchar", names));
+            statement.setArray(3, connection.createArrayOf("varchar", artists));
+            statement.setArray(4, connection.createArrayOf("varchar", albums));
+            statement.setArray(5, connection.createArrayOf("integer", durations));
+            statement.setArray(6, connection.createArrayOf("smallint", years));
+            statement.setArray(7, connection.createArrayOf("varchar", idempotencyKeys.toArray()));
+            return statement;
+        }, resultSet -> resultSet.next() ? resultSet.getLong(1) : 0L);
+        return inserted != null ? inserted.intValue() : 0;
+    }
+
+    @Override
+    public List<Long> deleteAllByIdReturningIds(List<Long> ids) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(DELETE_RETURNING_IDS_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", ids.toArray()));
+            return statement;
+        }, (resultSet, rowNum) -> resultSet.getLong(1));
+    }
+
+    @Override
+    public List<SongDto> findPage(SongFilter filter, SongCursor after, int limit) {
+        StringBuilder sql = new StringBuilder(SELECT_SONG_DTO_SQL);
+        List<Object> args = new ArrayList<>();
+
+        if (filter.ids() != null) {
+            sql.append(" AND id IN (").append(String.join(", ", Collections.nCopies(filter.ids().size(), "?"))).append(")");
+            args.addAll(filter.ids());
+        }
+        if (filter.idFrom() != null) {
+            sql.append(" AND id >= ?");
+            args.add(filter.idFrom());
+        }
+        if (filter.idTo() != null) {
+            sql.append(" AND id <= ?");
+            args.add(filter.idTo());
+        }
+        if (filter.artist() != null) {
+            sql.append(" AND artist = ?");
+            args.add(filter.artist());
+        }
+        if (filter.album() != null) {
+            sql.append(" AND album = ?");
+            args.add(filter.album());
+        }
+        if (filter.yearFrom() != null) {
+            sql.append(" AND year >= ?");
+            args.add(filter.yearFrom());
+        }
+        if (filter.yearTo() != null) {
+            sql.append(" AND year <= ?");
+            args.add(filter.yearTo());
+        }
+        if (filter.minDuration() != null) {
+            sql.append(" AND duration >= ?");
+            args.add(filter.minDuration());
+        }
+        if (filter.maxDuration() != null) {
+            sql.append(" AND duration <= ?");
+            args.add(filter.maxDuration());
+        }
+
+        if (filter.namePrefix() != null) {
+            sql.append(" AND ").append(NAME_KEY).append(" LIKE ").append(NAME_KEY_PARAMETER).append(" ESCAPE '\\'");
+            args.add(escapeLike(filter.namePrefix()) + "%");
+        }
+
+        SongOrder order = filter.order();
+        if (after != null) {
+            switch (order) {
+                case ID -> sql.append(" AND id > ?");
+                case NAME -> {
+                    sql.append(" AND (").append(NAME_KEY).append(", id) > (").append(NAME_KEY_PARAMETER).append(", ?)");
+                    args.add(after.name());
+                }
+                case YEAR, DURATION -> {
+                    sql.append(" AND (").append(orderColumn(order)).append(", id) > (?, ?)");
+                    args.add(after.value());
+                }
+            }
+            args.add(after.id());
+        }
+
+        sql.append(order == SongOrder.ID ? " ORDER BY id" : " ORDER BY " + orderColumn(order) + ", id").append(" LIMIT ?");
+        args.add(limit);
+
+        return jdbcTemplate.query(sql.toString(), SONG_DTO_ROW_MAPPER, args.toArray());
+    }
+
+    @Override
+    public List<Long> findIdsInRange(long idFrom, long idTo, int limit) {
+        return jdbcTemplate.queryForList(SELECT_IDS_IN_RANGE_SQL, Long.class, idFrom, idTo, limit);
+    }
+
+    @Override
+    public IdRangeDigest digestIdRange(long idFrom, long idTo) {
+        return jdbcTemplate.queryForObject(DIGEST_ID_RANGE_SQL,
+                (resultSet, rowNum) -> new IdRangeDigest(resultSet.getLong(1), resultSet.getLong(2)), idFrom, idTo);
+    }
+
+    private static String orderColumn(SongOrder order) {
+        return switch (order) {
+            case ID -> "id";
+            case NAME -> NAME_KEY;
+            case YEAR -> "year";
+            case DURATION -> "duration";
+        };
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
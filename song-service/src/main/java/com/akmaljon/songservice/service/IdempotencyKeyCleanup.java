@@ -0,0 +1,35 @@
+package com.akmaljon.songservice.service;
+
+import com.akmaljon.songservice.repository.SongRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+// Retries arrive within minutes, keys only need to outlive the longest retry window of the callers
+@Component
+public class IdempotencyKeyCleanup {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyKeyCleanup.class);
+
+    private final SongRepository songRepository;
+    private final Duration keyTtl;
+
+    public IdempotencyKeyCleanup(SongRepository songRepository,
+                                 @Value("${song.idempotency.key-ttl}") Duration keyTtl) {
+        this.songRepository = songRepository;
+        this.keyTtl = keyTtl;
+    }
+
+    @Scheduled(fixedDelayString = "${song.idempotency.cleanup-interval}")
+    public void removeExpiredKeys() {
+        int removed = songRepository.deleteIdempotencyKeysCreatedBefore(Instant.now().minus(keyTtl));
+        if (removed > 0) {
+            logger.info("Removed {} expired idempotency keys", removed);
+        }
+    }
+}
@@ -1,84 +1,272 @@
 package com.akmaljon.songservice.service;
 
+import com.akmaljon.songservice.cache.SongCache;
+import com.akmaljon.songservice.dto.SongBatchItemDto;
 import com.akmaljon.songservice.dto.SongDto;
+import com.akmaljon.songservice.dto.SongPageDto;
+import com.akmaljon.songservice.dto.SongQueryDto;
 import com.akmaljon.songservice.entity.Song;
+import com.akmaljon.songservice.exception.InvalidBatchException;
 import com.akmaljon.songservice.exception.InvalidCsvFormatException;
+import com.akmaljon.songservice.exception.InvalidIdempotencyKeyException;
+import com.akmaljon.songservice.exception.InvalidQueryParameterException;
 import com.akmaljon.songservice.exception.SongAlreadyExistsException;
 import com.akmaljon.songservice.exception.SongNotFoundException;
+import com.akmaljon.songservice.mapper.SongMapper;
+import com.akmaljon.songservice.repository.SongCursor;
+import com.akmaljon.songservice.repository.IdRangeDigest;
+import com.akmaljon.songservice.repository.SongFilter;
+import com.akmaljon.songservice.repository.SongOrder;
 import com.akmaljon.songservice.repository.SongRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.MappingIterator;
+import tools.jackson.databind.ObjectMapper;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class SongService {
 
     private static final Logger logger = LoggerFactory.getLogger(SongService.class);
     private static final int MAX_CSV_LENGTH = 200;
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    private static final int MAX_ID_PAGE_SIZE = 10000;
 
     private final SongRepository songRepository;
+    private final SongCache songCache;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int batchSize;
 
-    public SongService(SongRepository songRepository) {
+    public SongService(SongRepository songRepository,
+                       SongCache songCache,
+                       ObjectMapper objectMapper,
+                       Validator validator,
+                       @Value("${song.batch.jdbc-batch-size}") int batchSize) {
         this.songRepository = songRepository;
+        this.songCache = songCache;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.batchSize = batchSize;
     }
 
+    // A single auto-committed statement: no existence check to race with, no merge SELECT before the INSERT.
+    // A repeated request carrying the same idempotency key gets the original answer instead of a 409
+    public Map<String, Long> createSong(SongDto songDto, String idempotencyKey) {
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            throw new InvalidIdempotencyKeyException(MAX_IDEMPOTENCY_KEY_LENGTH);
+        }
+
+        Song song = SongMapper.toEntity(songDto);
+        if (!songRepository.insertIfAbsent(song, idempotencyKey)) {
+            if (idempotencyKey != null && songRepository.isIdempotencyKeyRecorded(idempotencyKey, song.getId())) {
+                logger.debug("Replayed create of song {} for idempotency key {}", song.getId(), idempotencyKey);
+                return Map.of("id", song.getId());
+            }
+            throw new SongAlreadyExistsException(song.getId());
+        }
+
+        logger.info("Created song with ID: {}", song.getId());
+        return Map.of("id", song.getId());
+    }
+
+    // Accepts a JSON array or NDJSON; items are bound one at a time and flushed in batches of one statement each,
+    // so memory stays bounded by the batch size. Any invalid item rolls back the whole request
     @Transactional
-    public Map<String, Long> createSong(SongDto songDto) {
-        if (songRepository.existsById(songDto.getId())) {
-            throw new SongAlreadyExistsException(songDto.getId());
-        }
-
-        Song song = new Song(
-                songDto.getId(),
-                songDto.getName(),
-                songDto.getArtist(),
-                songDto.getAlbum(),
-                songDto.getDuration(),
-                songDto.getYear()
-        );
+    public Map<String, Long> createSongs(InputStream body) {
+        long received = 0;
+        long created = 0;
+        List<Song> pending = new ArrayList<>(batchSize);
+        List<String> pendingKeys = new ArrayList<>(batchSize);
+
+        try {
+            MappingIterator<SongBatchItemDto> items = objectMapper.readerFor(SongBatchItemDto.class).readValues(body);
+            while (items.hasNextValue()) {
+                SongBatchItemDto item = items.nextValue();
+                validateBatchItem(item, received);
+                pending.add(SongMapper.toEntity(item));
+                pendingKeys.add(item.getIdempotencyKey());
+                received++;
+
+                if (pending.size() >= batchSize) {
+                    created += songRepository.insertIgnoringConflicts(pending, pendingKeys);
+                    pending.clear();
+                    pendingKeys.clear();
+                }
+            }
+        } catch (JacksonException e) {
+            throw new InvalidBatchException("Invalid request body at item " + received, Map.of());
+        }
+
+        if (!pending.isEmpty()) {
+            created += songRepository.insertIgnoringConflicts(pending, pendingKeys);
+        }
 
-        Song savedSong = songRepository.save(song);
-        logger.info("Created song with ID: {}", savedSong.getId());
-        return Map.of("id", savedSong.getId());
+        logger.info("Batch create received {} songs, created {}", received, created);
+        return Map.of("received", received, "created", created);
+    }
+
+    // For songs arriving as resource events, validated by the caller. Existing IDs are skipped like in
+    // createSongs, so a redelivered event does not fail the batch it arrives in
+    @Transactional
+    public long saveSongs(List<SongBatchItemDto> songs) {
+        long created = 0;
+        for (int i = 0; i < songs.size(); i += batchSize) {
+            List<SongBatchItemDto> items = songs.subList(i, Math.min(i + batchSize, songs.size()));
+            created += songRepository.insertIgnoringConflicts(
+                    items.stream().map(SongMapper::toEntity).toList(),
+                    items.stream().map(SongBatchItemDto::getIdempotencyKey).toList());
+        }
+        return created;
     }
 
     public SongDto getSong(String id) {
         Long songId = validateAndParseId(id);
-        Song song = songRepository.findById(songId)
-                .orElseThrow(() -> new SongNotFoundException(songId));
-
-        return new SongDto(
-                song.getId(),
-                song.getName(),
-                song.getArtist(),
-                song.getAlbum(),
-                song.getDuration(),
-                song.getYear()
-        );
+        SongDto songDto = songCache.get(songId, key -> songRepository.findById(key)
+                .map(SongMapper::toDto)
+                .orElse(null));
+        if (songDto == null) {
+            throw new SongNotFoundException(songId);
+        }
+        return songDto;
+    }
+
+    public Map<String, Long> digestIdRange(long idFrom, long idTo) {
+        if (idFrom <= 0 || idTo <= 0 || idFrom > idTo) {
+            throw new InvalidQueryParameterException("Invalid ID range " + idFrom + ".." + idTo + ". Bounds must be positive and ordered");
+        }
+        IdRangeDigest digest = songRepository.digestIdRange(idFrom, idTo);
+        return Map.of("count", digest.count(), "digest", digest.digest());
+    }
+
+    // Pages through a range by raising idFrom past the last ID returned, until a page comes back short
+    public Map<String, List<Long>> listSongIds(long idFrom, long idTo, int limit) {
+        if (idFrom <= 0 || idTo <= 0 || idFrom > idTo) {
+            throw new InvalidQueryParameterException("Invalid ID range " + idFrom + ".." + idTo + ". Bounds must be positive and ordered");
+        }
+        if (limit < 1 || limit > MAX_ID_PAGE_SIZE) {
+            throw new InvalidQueryParameterException("Limit must be between 1 and " + MAX_ID_PAGE_SIZE);
+        }
+        return Map.of("ids", songRepository.findIdsInRange(idFrom, idTo, limit));
+    }
+
+    // Keyset pagination: the cursor encodes where the previous page ended, so deep pages cost the same as the first
+    public SongPageDto listSongs(SongQueryDto query) {
+        String year = blankToNull(query.getYear());
+        String yearFrom = year != null ? year : blankToNull(query.getYearFrom());
+        String yearTo = year != null ? year : blankToNull(query.getYearTo());
+        String minDuration = blankToNull(query.getMinDuration());
+        String maxDuration = blankToNull(query.getMaxDuration());
+
+        SongFilter filter = new SongFilter(
+                query.getId() == null || query.getId().isEmpty() ? null : query.getId(),
+                query.getIdFrom(),
+                query.getIdTo(),
+                blankToNull(query.getArtist()),
+                blankToNull(query.getAlbum()),
+                yearFrom != null ? SongMapper.parseYear(yearFrom) : null,
+                yearTo != null ? SongMapper.parseYear(yearTo) : null,
+                minDuration != null ? SongMapper.parseDuration(minDuration) : null,
+                maxDuration != null ? SongMapper.parseDuration(maxDuration) : null,
+                blankToNull(query.getName()));
+        SongOrder order = filter.order();
+        int limit = query.getLimit();
+
+        // One extra row tells whether another page follows
+        List<SongDto> songs = songRepository.findPage(filter, decodeCursor(query.getCursor(), order), limit + 1);
+        String nextCursor = null;
+        if (songs.size() > limit) {
+            songs = songs.subList(0, limit);
+            nextCursor = encodeCursor(songs.get(limit - 1), order);
+        }
+        return new SongPageDto(songs, nextCursor);
     }
 
     @Transactional
     public Map<String, List<Long>> deleteSongs(String csvIds) {
-        List<Long> ids = parseCsvIds(csvIds);
-        List<Long> deletedIds = new ArrayList<>();
+        return deleteSongs(parseCsvIds(csvIds));
+    }
+
+    // One DELETE ... RETURNING round-trip regardless of how many IDs are requested
+    @Transactional
+    public Map<String, List<Long>> deleteSongs(List<Long> ids) {
+        Set<Long> existingIds = new HashSet<>(songRepository.deleteAllByIdReturningIds(ids));
+
+        List<Long> deletedIds = ids.stream()
+                .distinct()
+                .filter(existingIds::contains)
+                .toList();
+        songCache.invalidateAfterCommit(deletedIds);
+        return Map.of("ids", deletedIds);
+    }
+
+    private String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    // "id" for ID order, otherwise "id:ORDER:key", so a cursor cannot be replayed against a listing ordered differently
+    private String encodeCursor(SongDto last, SongOrder order) {
+        String position = switch (order) {
+            case ID -> last.getId().toString();
+            case NAME -> last.getId() + ":" + order + ":" + last.getName();
+            case YEAR -> last.getId() + ":" + order + ":" + SongMapper.parseYear(last.getYear());
+            case DURATION -> last.getId() + ":" + order + ":" + SongMapper.parseDuration(last.getDuration());
+        };
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private SongCursor decodeCursor(String cursor, SongOrder order) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
 
-        for (Long id : ids) {
-            if (!songRepository.existsById(id)) {
-                continue;
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = position.split(":", 3);
+            if (order == SongOrder.ID ? parts.length != 1 : parts.length != 3 || !parts[1].equals(order.name())) {
+                throw new InvalidQueryParameterException("Cursor does not belong to this listing");
             }
-            songRepository.deleteById(id);
-            deletedIds.add(id);
+            long id = Long.parseLong(parts[0]);
+            return switch (order) {
+                case ID -> new SongCursor(null, null, id);
+                case NAME -> new SongCursor(parts[2], null, id);
+                case YEAR, DURATION -> new SongCursor(null, Integer.parseInt(parts[2]), id);
+            };
+        } catch (IllegalArgumentException e) {
+            throw new InvalidQueryParameterException("Invalid cursor");
         }
+    }
 
-        return Map.of("ids", deletedIds);
+    private void validateBatchItem(SongDto songDto, long index) {
+        Set<ConstraintViolation<SongDto>> violations = validator.validate(songDto);
+        if (violations.isEmpty()) {
+            return;
+        }
+
+        Map<String, String> details = new HashMap<>();
+        violations.forEach(violation ->
+                details.put("[" + index + "]." + violation.getPropertyPath(), violation.getMessage())
+        );
+        throw new InvalidBatchException("Validation error", details);
     }
 
-    private Long validateAndParseId(String id) {
+    // Package-private and static so the benchmarks module can measure them without a Spring context
+    static Long validateAndParseId(String id) {
         try {
             Long parsedId = Long.parseLong(id);
             if (parsedId <= 0) {
@@ -90,7 +278,7 @@ public class SongService {
         }
     }
 
-    private List<Long> parseCsvIds(String csvIds) {
+    static List<Long> parseCsvIds(String csvIds) {
         if (csvIds == null || csvIds.isBlank()) {
             throw new InvalidCsvFormatException("ID parameter cannot be empty");
         }